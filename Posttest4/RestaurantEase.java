@@ -1,28 +1,359 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+interface IdGenerator {
+    long ID_TIDAK_VALID = -1;
+    
+    long berikutnya();
+    
+    static long parse(String teks) {
+        if (teks == null) {
+            return ID_TIDAK_VALID;
+        }
+        String angka = teks.trim();
+        if (angka.isEmpty() || angka.length() > 19) {
+            return ID_TIDAK_VALID;
+        }
+        long hasil = 0;
+        for (int i = 0; i < angka.length(); i++) {
+            char c = angka.charAt(i);
+            if (c < '0' || c > '9') {
+                return ID_TIDAK_VALID;
+            }
+            int digit = c - '0';
+            if (hasil > (Long.MAX_VALUE - digit) / 10) {
+                return ID_TIDAK_VALID;
+            }
+            hasil = hasil * 10 + digit;
+        }
+        return hasil;
+    }
+}
+
+class SequenceIdGenerator implements IdGenerator {
+    // Dipanggil setiap kali blok baru dicadangkan, supaya batasnya bisa disimpan dan
+    // setelah restart penomoran dilanjutkan dari batas itu tanpa mengulang ID.
+    interface PencatatBlok {
+        void cadangkan(long batasBaru);
+    }
+    
+    private final AtomicLong berikutnya;
+    private final int ukuranBlok;
+    private final PencatatBlok pencatat;
+    private volatile long batasBlok;
+    
+    public SequenceIdGenerator(long mulai, int ukuranBlok, PencatatBlok pencatat) {
+        if (ukuranBlok <= 0) {
+            throw new IllegalArgumentException("Ukuran blok harus lebih dari 0!");
+        }
+        this.berikutnya = new AtomicLong(mulai);
+        this.ukuranBlok = ukuranBlok;
+        this.pencatat = pencatat;
+        this.batasBlok = mulai;
+    }
+    
+    @Override
+    public long berikutnya() {
+        long id = berikutnya.getAndIncrement();
+        if (id >= batasBlok) {
+            cadangkanSampai(id);
+        }
+        return id;
+    }
+    
+    public long getBatasBlok() { return batasBlok; }
+    
+    private synchronized void cadangkanSampai(long id) {
+        while (id >= batasBlok) {
+            long batasBaru = batasBlok + ukuranBlok;
+            if (pencatat != null) {
+                pencatat.cadangkan(batasBaru);
+            }
+            batasBlok = batasBaru;
+        }
+    }
+}
+
+class SnowflakeIdGenerator implements IdGenerator {
+    // 41 bit milidetik sejak EPOCH | 10 bit nomor node | 12 bit urutan dalam milidetik yang sama.
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int BIT_NODE = 10;
+    private static final int BIT_URUTAN = 12;
+    private static final long MASK_URUTAN = (1L << BIT_URUTAN) - 1;
+    static final int NODE_MAKSIMUM = (1 << BIT_NODE) - 1;
+    
+    private final long node;
+    private final Clock jam;
+    // Waktu terakhir dan urutannya dikemas dalam satu long agar bisa diperbarui dengan satu CAS.
+    private final AtomicLong keadaan = new AtomicLong();
+    
+    public SnowflakeIdGenerator(int node) {
+        this(node, Clock.systemUTC());
+    }
+    
+    public SnowflakeIdGenerator(int node, Clock jam) {
+        if (node < 0 || node > NODE_MAKSIMUM) {
+            throw new IllegalArgumentException("Nomor node harus antara 0-" + NODE_MAKSIMUM + "!");
+        }
+        this.node = node;
+        this.jam = jam;
+    }
+    
+    @Override
+    public long berikutnya() {
+        while (true) {
+            long lama = keadaan.get();
+            long waktuLama = lama >>> BIT_URUTAN;
+            // Jika jam mundur, tetap pakai waktu terakhir agar ID tidak pernah berulang.
+            long sekarang = Math.max(waktuLama, jam.millis() - EPOCH);
+            long baru;
+            if (sekarang > waktuLama) {
+                baru = sekarang << BIT_URUTAN;
+            } else if ((lama & MASK_URUTAN) < MASK_URUTAN) {
+                baru = lama + 1;
+            } else {
+                baru = (waktuLama + 1) << BIT_URUTAN;
+            }
+            if (keadaan.compareAndSet(lama, baru)) {
+                long waktu = baru >>> BIT_URUTAN;
+                return (waktu << (BIT_NODE + BIT_URUTAN)) | (node << BIT_URUTAN) | (baru & MASK_URUTAN);
+            }
+        }
+    }
+}
+
+// Uang disimpan sebagai long dalam rupiah penuh; semua aritmetika memakai operasi exact
+// agar overflow tidak diam-diam menghasilkan total yang salah.
+final class Rupiah {
+    private Rupiah() {
+    }
+    
+    static long kali(long harga, int jumlah) {
+        return Math.multiplyExact(harga, (long) jumlah);
+    }
+    
+    static long tambah(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    // Persentase dibulatkan ke rupiah terdekat (setengah ke atas).
+    static long persen(long nilai, int persen) {
+        return Math.floorDiv(Math.addExact(Math.multiplyExact(nilai, (long) persen), 50), 100);
+    }
+    
+    // Menerima "18000", "18000.00" atau "18000,00"; pecahan selain nol ditolak.
+    static long parse(String teks) {
+        String bersih = teks.trim();
+        int titik = Math.max(bersih.indexOf('.'), bersih.indexOf(','));
+        if (titik >= 0) {
+            for (int i = titik + 1; i < bersih.length(); i++) {
+                if (bersih.charAt(i) != '0') {
+                    throw new IllegalArgumentException("Harga harus dalam rupiah penuh!");
+                }
+            }
+            bersih = bersih.substring(0, titik);
+        }
+        if (bersih.isEmpty()) {
+            throw new IllegalArgumentException("Harga tidak boleh kosong!");
+        }
+        long nilai = 0;
+        for (int i = 0; i < bersih.length(); i++) {
+            char c = bersih.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Harga hanya boleh berisi angka!");
+            }
+            nilai = Math.addExact(Math.multiplyExact(nilai, 10L), c - '0');
+        }
+        return nilai;
+    }
+    
+    // Tampilan tetap memakai dua angka desimal seperti sebelumnya.
+    static String teks(long nilai) {
+        return nilai + ".00";
+    }
+    
+    static String format(long nilai) {
+        return "Rp " + teks(nilai);
+    }
+    
+    static StringBuilder tulis(StringBuilder sb, long nilai) {
+        return sb.append("Rp ").append(nilai).append(".00");
+    }
+}
+
+// Format teks menu, dipakai MenuItem dan KatalogTerpeta.Tampilan supaya terminal yang membaca
+// katalog bersama menampilkan menu persis sama dengan proses utama.
+final class TeksMenu {
+    static final String DESKRIPSI_REGULAR = "Menu Regular";
+    
+    private TeksMenu() {
+    }
+    
+    static String dasar(long nomorId, String nama, String kategori, long harga, boolean tersedia) {
+        return String.format("ID: %02d | %-20s | %-10s | Rp %s | %s",
+                nomorId, nama, kategori, Rupiah.teks(harga), tersedia ? "Tersedia" : "Tidak Tersedia");
+    }
+    
+    static String kopi(String dasar, String jenisKopi, String tingkatRoasting) {
+        return String.format("%s | Jenis: %s | Roasting: %s", dasar, jenisKopi, tingkatRoasting);
+    }
+    
+    static String deskripsiKopi(String nama, String jenisKopi, String tingkatRoasting) {
+        return String.format("%s (Jenis: %s, Roasting: %s)", nama, jenisKopi, tingkatRoasting);
+    }
+    
+    static String makanan(String dasar, boolean vegetarian, String topping) {
+        return String.format("%s | %s | Topping: %s", dasar, vegetarian ? "Vegetarian" : "Non-Vegetarian", topping);
+    }
+    
+    static String deskripsiMakanan(String nama, boolean vegetarian, String topping) {
+        return String.format("%s (%s, Topping: %s)", nama, vegetarian ? "Vegetarian" : "Non-Vegetarian", topping);
+    }
+    
+    static String minuman(String dasar, boolean dingin, int levelKemanisan) {
+        return String.format("%s | %s | Level Manis: %d/5", dasar, dingin ? "Dingin" : "Panas", levelKemanisan);
+    }
+    
+    static String deskripsiMinuman(String nama, boolean dingin, int levelKemanisan) {
+        return String.format("%s (%s, Level Manis: %d/5)", nama, dingin ? "Dingin" : "Panas", levelKemanisan);
+    }
+}
 
 class MenuItem {
-    private static int penghitungId = 1;
-    private final String id;
+    private static IdGenerator generatorId = new SequenceIdGenerator(1, 64, null);
+    private final long nomorId;
     private String nama;
     private String kategori;
-    private double harga;
+    private long harga;
     private boolean tersedia;
+    private MenuCatalog katalog;
+    // Hasil render toString/getDeskripsi, berlaku selama versiRender belum dinaikkan setter.
+    private final AtomicInteger versiRender = new AtomicInteger();
+    private volatile RenderMenu render;
+    
+    private static final class RenderMenu {
+        private final int versi;
+        private final String teks;
+        private final String deskripsi;
+        
+        private RenderMenu(int versi, String teks, String deskripsi) {
+            this.versi = versi;
+            this.teks = teks;
+            this.deskripsi = deskripsi;
+        }
+    }
 
-    public MenuItem(String nama, String kategori, double harga) {
-        this.id = String.format("%02d", penghitungId++);
+    public MenuItem(String nama, String kategori, long harga) {
+        this(idBaru(), nama, kategori, harga);
+    }
+    
+    // Dipakai saat memulihkan menu dari log, ID-nya sudah ditentukan.
+    MenuItem(long nomorId, String nama, String kategori, long harga) {
+        this.nomorId = nomorId;
         setNama(nama);
         setKategori(kategori);
         setHarga(harga);
         this.tersedia = true;
     }
 
-    public String getId() { return id; }
+    static void setGeneratorId(IdGenerator generator) { generatorId = generator; }
+    
+    protected static long idBaru() { return generatorId.berikutnya(); }
+    
+    public String getId() { return String.format("%02d", nomorId); }
+    
+    public long getNomorId() { return nomorId; }
     
     public String getNama() { return nama; }
     
@@ -31,6 +362,7 @@ class MenuItem {
             throw new IllegalArgumentException("Nama tidak boleh kosong!");
         }
         this.nama = nama.trim();
+        beritahuKatalog();
     }
     
     public String getKategori() { return kategori; }
@@ -50,29 +382,65 @@ class MenuItem {
             throw new IllegalArgumentException("Kategori tidak valid!");
         }
         this.kategori = kategori;
+        beritahuKatalog();
     }
     
-    public double getHarga() { return harga; }
+    public long getHarga() { return harga; }
     
-    public void setHarga(double harga) {
+    public void setHarga(long harga) {
         if (harga < 0) {
             throw new IllegalArgumentException("Harga tidak boleh negatif!");
         }
         this.harga = harga;
+        beritahuKatalog();
     }
     
     public boolean isTersedia() { return tersedia; }
     
-    public void setTersedia(boolean tersedia) { this.tersedia = tersedia; }
+    public void setTersedia(boolean tersedia) {
+        this.tersedia = tersedia;
+        beritahuKatalog();
+    }
+    
+    // Dipakai saat memulihkan menu; tidak memicu efek samping setTersedia di subclass.
+    void pulihkanTersedia(boolean tersedia) {
+        this.tersedia = tersedia;
+        beritahuKatalog();
+    }
+    
+    void setKatalog(MenuCatalog katalog) { this.katalog = katalog; }
+    
+    // Dipanggil semua setter: cache render dibuang dan katalog diberi tahu.
+    protected void beritahuKatalog() {
+        versiRender.incrementAndGet();
+        if (katalog != null) {
+            katalog.perbarui(this);
+        }
+    }
+    
+    String teksTampilan() { return renderTerbaru().teks; }
+    
+    String deskripsiTampilan() { return renderTerbaru().deskripsi; }
+    
+    // Versi dibaca sebelum render; jika setter berjalan di tengahnya, versi tersimpan sudah
+    // usang dan pemanggil berikutnya merender ulang.
+    private RenderMenu renderTerbaru() {
+        RenderMenu r = render;
+        int versi = versiRender.get();
+        if (r == null || r.versi != versi) {
+            r = new RenderMenu(versi, toString(), getDeskripsi());
+            render = r;
+        }
+        return r;
+    }
 
     @Override
     public String toString() {
-        return String.format("ID: %s | %-20s | %-10s | Rp %.2f | %s", 
-                id, nama, kategori, harga, tersedia ? "Tersedia" : "Tidak Tersedia");
+        return TeksMenu.dasar(nomorId, nama, kategori, harga, tersedia);
     }
     
     public String getDeskripsi() {
-        return "Menu Regular";
+        return TeksMenu.DESKRIPSI_REGULAR;
     }
 }
 
@@ -80,8 +448,12 @@ class KopiItem extends MenuItem {
     private String jenisKopi;
     private String tingkatRoasting;
     
-    public KopiItem(String nama, double harga, String jenisKopi, String tingkatRoasting) {
-        super(nama, "Kopi", harga);
+    public KopiItem(String nama, long harga, String jenisKopi, String tingkatRoasting) {
+        this(idBaru(), nama, harga, jenisKopi, tingkatRoasting);
+    }
+    
+    KopiItem(long nomorId, String nama, long harga, String jenisKopi, String tingkatRoasting) {
+        super(nomorId, nama, "Kopi", harga);
         this.jenisKopi = jenisKopi;
         this.tingkatRoasting = tingkatRoasting;
     }
@@ -93,6 +465,7 @@ class KopiItem extends MenuItem {
             throw new IllegalArgumentException("Jenis kopi tidak boleh kosong!");
         }
         this.jenisKopi = jenisKopi;
+        beritahuKatalog();
     }
     
     public String getTingkatRoasting() { return tingkatRoasting; }
@@ -102,17 +475,17 @@ class KopiItem extends MenuItem {
             throw new IllegalArgumentException("Tingkat roasting tidak boleh kosong!");
         }
         this.tingkatRoasting = tingkatRoasting;
+        beritahuKatalog();
     }
     
     @Override
     public String getDeskripsi() {
-        return String.format("%s (Jenis: %s, Roasting: %s)", getNama(), jenisKopi, tingkatRoasting);
+        return TeksMenu.deskripsiKopi(getNama(), jenisKopi, tingkatRoasting);
     }
     
     @Override
     public String toString() {
-        return String.format("%s | Jenis: %s | Roasting: %s", 
-                super.toString(), jenisKopi, tingkatRoasting);
+        return TeksMenu.kopi(super.toString(), jenisKopi, tingkatRoasting);
     }
 }
 
@@ -122,8 +495,12 @@ class MakananItem extends MenuItem {
     
     private final String[] TOPPING_VALID = {"Coklat", "Keju", "Kacang", "Buah", "Krim", "Tanpa Topping"};
     
-    public MakananItem(String nama, double harga, boolean isVegetarian, String topping) {
-        super(nama, "Makanan", harga);
+    public MakananItem(String nama, long harga, boolean isVegetarian, String topping) {
+        this(idBaru(), nama, harga, isVegetarian, topping);
+    }
+    
+    MakananItem(long nomorId, String nama, long harga, boolean isVegetarian, String topping) {
+        super(nomorId, nama, "Makanan", harga);
         this.isVegetarian = isVegetarian;
         setTopping(topping); 
     }
@@ -132,6 +509,7 @@ class MakananItem extends MenuItem {
     
     public void setVegetarian(boolean isVegetarian) {
         this.isVegetarian = isVegetarian;
+        beritahuKatalog();
     }
     
     public String getTopping() { return topping; }
@@ -140,6 +518,7 @@ class MakananItem extends MenuItem {
         for (String t : TOPPING_VALID) {
             if (t.equalsIgnoreCase(topping)) {
                 this.topping = t;
+                beritahuKatalog();
                 return;
             }
         }
@@ -148,67 +527,265 @@ class MakananItem extends MenuItem {
     
     @Override
     public String getDeskripsi() {
-        String vegetarianStatus = isVegetarian ? "Vegetarian" : "Non-Vegetarian";
-        return String.format("%s (%s, Topping: %s)", getNama(), vegetarianStatus, topping);
+        return TeksMenu.deskripsiMakanan(getNama(), isVegetarian, topping);
     }
     
     @Override
     public String toString() {
-        return String.format("%s | %s | Topping: %s", 
-                super.toString(), isVegetarian ? "Vegetarian" : "Non-Vegetarian", topping);
+        return TeksMenu.makanan(super.toString(), isVegetarian, topping);
     }
 }
 
+// Tampilan satu baris pesanan; penyimpanan sebenarnya ada di BarisPesanan.
 class OrderItem {
-    private MenuItem menuItem;
-    private int jumlah;
+    private final MenuItem menuItem;
+    private final int jumlah;
+    // Harga dikunci saat item dipesan agar total pesanan tidak berubah ketika harga menu diubah.
+    private final long harga;
 
     public OrderItem(MenuItem menuItem, int jumlah) {
+        this(menuItem, jumlah, menuItem.getHarga());
+    }
+    
+    OrderItem(MenuItem menuItem, int jumlah, long harga) {
         this.menuItem = menuItem;
         this.jumlah = jumlah;
+        this.harga = harga;
     }
 
     public MenuItem getMenuItem() { return menuItem; }
     public int getJumlah() { return jumlah; }
-    public void setJumlah(int jumlah) { this.jumlah = jumlah; }
-    public double getSubtotal() { return menuItem.getHarga() * jumlah; }
+    public long getHarga() { return harga; }
+    public long getSubtotal() { return Rupiah.kali(harga, jumlah); }
 
     @Override
     public String toString() {
-        return String.format("%-20s | %d | Rp %.2f | Rp %.2f", 
-                menuItem.getNama(), jumlah, menuItem.getHarga(), getSubtotal());
+        return String.format("%-20s | %d | Rp %s | Rp %s", 
+                menuItem.getNama(), jumlah, Rupiah.teks(harga), Rupiah.teks(getSubtotal()));
+    }
+}
+
+// Baris pesanan dalam array paralel (ID menu, jumlah, harga terkunci) tanpa objek per baris.
+// Tidak thread-safe; selalu diakses di bawah kunci Order.
+final class BarisPesanan {
+    private static final long[] KOSONG_LONG = new long[0];
+    private static final int[] KOSONG_INT = new int[0];
+    private static final MenuItem[] KOSONG_MENU = new MenuItem[0];
+    // Sampai jumlah baris ini pencarian linear atas idMenu lebih murah daripada indeks.
+    private static final int AMBANG_INDEKS = 16;
+    
+    private long[] idMenu = KOSONG_LONG;
+    private int[] jumlah = KOSONG_INT;
+    private long[] harga = KOSONG_LONG;
+    private MenuItem[] menu = KOSONG_MENU;
+    private int ukuran;
+    // Open addressing dengan linear probing; slot berisi posisi baris + 1, 0 berarti kosong.
+    private int[] indeks;
+    
+    int ukuran() { return ukuran; }
+    
+    long idMenu(int i) { return idMenu[i]; }
+    
+    int jumlah(int i) { return jumlah[i]; }
+    
+    long harga(int i) { return harga[i]; }
+    
+    MenuItem menu(int i) { return menu[i]; }
+    
+    // Mengembalikan posisi baris untuk menu tersebut, atau -1 jika belum ada.
+    int cari(long id) {
+        if (indeks == null && ukuran > AMBANG_INDEKS) {
+            bangunIndeks();
+        }
+        if (indeks == null) {
+            for (int i = 0; i < ukuran; i++) {
+                if (idMenu[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = indeks.length - 1;
+        for (int slot = sebar(id) & mask; ; slot = (slot + 1) & mask) {
+            int isi = indeks[slot];
+            if (isi == 0) {
+                return -1;
+            }
+            if (idMenu[isi - 1] == id) {
+                return isi - 1;
+            }
+        }
+    }
+    
+    void tambahJumlah(int i, int tambahan) {
+        jumlah[i] = Math.addExact(jumlah[i], tambahan);
+    }
+    
+    void tambah(MenuItem item, int jumlahBaru, long hargaBaru) {
+        if (ukuran == idMenu.length) {
+            perbesar();
+        }
+        int i = ukuran++;
+        idMenu[i] = item.getNomorId();
+        jumlah[i] = jumlahBaru;
+        harga[i] = hargaBaru;
+        menu[i] = item;
+        if (indeks != null && ukuran * 4 <= indeks.length * 3) {
+            masukkanIndeks(i);
+        } else if (ukuran > AMBANG_INDEKS) {
+            bangunIndeks();
+        }
+    }
+    
+    // Baris sesudahnya digeser agar urutan tetap; posisi berubah sehingga indeks dibangun ulang.
+    void hapus(int i) {
+        int sisa = ukuran - i - 1;
+        System.arraycopy(idMenu, i + 1, idMenu, i, sisa);
+        System.arraycopy(jumlah, i + 1, jumlah, i, sisa);
+        System.arraycopy(harga, i + 1, harga, i, sisa);
+        System.arraycopy(menu, i + 1, menu, i, sisa);
+        ukuran--;
+        menu[ukuran] = null;
+        indeks = null;
+    }
+    
+    // Setelah pesanan disimpan array dipangkas ke ukuran pas dan indeks dilepas;
+    // indeks dibangun lagi hanya jika pesanan diubah kembali.
+    void padatkan() {
+        if (ukuran == 0) {
+            idMenu = KOSONG_LONG;
+            jumlah = KOSONG_INT;
+            harga = KOSONG_LONG;
+            menu = KOSONG_MENU;
+        } else if (idMenu.length != ukuran) {
+            idMenu = Arrays.copyOf(idMenu, ukuran);
+            jumlah = Arrays.copyOf(jumlah, ukuran);
+            harga = Arrays.copyOf(harga, ukuran);
+            menu = Arrays.copyOf(menu, ukuran);
+        }
+        indeks = null;
+    }
+    
+    private void perbesar() {
+        int kapasitas = ukuran < 4 ? ukuran + 1 : ukuran + (ukuran >> 1);
+        idMenu = Arrays.copyOf(idMenu, kapasitas);
+        jumlah = Arrays.copyOf(jumlah, kapasitas);
+        harga = Arrays.copyOf(harga, kapasitas);
+        menu = Arrays.copyOf(menu, kapasitas);
+    }
+    
+    private void bangunIndeks() {
+        indeks = new int[Integer.highestOneBit(ukuran * 4 / 3) << 1];
+        for (int i = 0; i < ukuran; i++) {
+            masukkanIndeks(i);
+        }
+    }
+    
+    private void masukkanIndeks(int i) {
+        int mask = indeks.length - 1;
+        int slot = sebar(idMenu[i]) & mask;
+        while (indeks[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        indeks[slot] = i + 1;
+    }
+    
+    // ID menu berurutan, jadi bit-bitnya diacak dulu agar tidak bergerombol di tabel.
+    private static int sebar(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
+
+enum StatusPesanan {
+    BARU("Baru"),
+    DIPROSES("Diproses"),
+    SELESAI("Selesai"),
+    DIBATALKAN("Dibatalkan");
+    
+    private static final Map<String, StatusPesanan> PER_LABEL = new HashMap<>();
+    
+    static {
+        for (StatusPesanan status : values()) {
+            PER_LABEL.put(status.label, status);
+        }
+    }
+    
+    private final String label;
+    
+    StatusPesanan(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() { return label; }
+    
+    public static StatusPesanan dari(String label) {
+        return label == null ? null : PER_LABEL.get(label);
     }
 }
 
 class Order {
-    private static int penghitungId = 1;
-    private final String id;
-    private final ArrayList<OrderItem> daftarItem;
+    // Batas jumlah per item yang diterima dari kasir POS dan HTTP API.
+    static final int MAKS_JUMLAH_ITEM = 9999;
+    private static IdGenerator generatorId = new SequenceIdGenerator(1, 64, null);
+    private final long nomorId;
     private String nomorMeja;
+    private final String kunciPelanggan;
     private final String namaPelanggan;
     private final LocalDateTime waktuPesan;
-    private String status; 
+    private volatile StatusPesanan status;
+    private OrderStore penyimpan;
 
-    private List<OrderItem> items = new ArrayList<>();
+    private final BarisPesanan baris = new BarisPesanan();
+    // Ringkasan berjalan, diperbarui di tambahItem/hapusItem sehingga dibaca tanpa iterasi.
+    private volatile long total;
+    private volatile int jumlahUnit;
+    // Ditetapkan TabelHarga saat pesanan disimpan.
+    private volatile long potongan;
 
-    public Order(String nomorMeja, String namaPelanggan) {
-        this.id = String.format("%01d", penghitungId++);
-        this.daftarItem = new ArrayList<>();
+    public Order(String nomorMeja, User pelanggan) {
+        this.nomorId = generatorId.berikutnya();
         setNomorMeja(nomorMeja);
-        this.namaPelanggan = namaPelanggan;
+        this.kunciPelanggan = pelanggan.getUsername();
+        this.namaPelanggan = pelanggan.getNama();
         this.waktuPesan = LocalDateTime.now();
-        this.status = "Baru";
+        this.status = StatusPesanan.BARU;
+    }
+    
+    // Dipakai saat memulihkan pesanan dari log.
+    Order(long nomorId, String nomorMeja, String kunciPelanggan, String namaPelanggan,
+            LocalDateTime waktuPesan, StatusPesanan status) {
+        this.nomorId = nomorId;
+        setNomorMeja(nomorMeja);
+        this.kunciPelanggan = kunciPelanggan;
+        this.namaPelanggan = namaPelanggan;
+        this.waktuPesan = waktuPesan;
+        this.status = status;
     }
 
-    public List<OrderItem> getItems() {
-        return items;
+    interface PengunjungBaris {
+        void kunjungi(MenuItem menu, int jumlah, long harga);
     }
 
-    public String getId() { return id; }
+    public synchronized List<OrderItem> getItems() {
+        List<OrderItem> hasil = new ArrayList<>(baris.ukuran());
+        for (int i = 0; i < baris.ukuran(); i++) {
+            hasil.add(new OrderItem(baris.menu(i), baris.jumlah(i), baris.harga(i)));
+        }
+        return hasil;
+    }
     
-    public ArrayList<OrderItem> getDaftarItem() { 
-        return new ArrayList<>(daftarItem); 
+    // Untuk pemindaian massal tanpa membuat objek per baris.
+    synchronized void untukSetiapBaris(PengunjungBaris pengunjung) {
+        for (int i = 0; i < baris.ukuran(); i++) {
+            pengunjung.kunjungi(baris.menu(i), baris.jumlah(i), baris.harga(i));
+        }
     }
+
+    static void setGeneratorId(IdGenerator generator) { generatorId = generator; }
+    
+    public String getId() { return Long.toString(nomorId); }
+    
+    public long getNomorId() { return nomorId; }
     
     public String getNomorMeja() { return nomorMeja; }
     
@@ -219,148 +796,448 @@ class Order {
         this.nomorMeja = nomorMeja.trim();
     }
     
+    public String getKunciPelanggan() { return kunciPelanggan; }
+    
     public String getNamaPelanggan() { return namaPelanggan; }
     
     public LocalDateTime getWaktuPesan() { return waktuPesan; }
     
-    public String getStatus() { return status; }
+    public String getStatus() { return status.getLabel(); }
+    
+    public StatusPesanan getStatusPesanan() { return status; }
     
     protected boolean isStatusValid(String status) {
-        String[] statusValid = {"Baru", "Diproses", "Selesai", "Dibatalkan"};
-        for (String valid : statusValid) {
-            if (valid.equals(status)) {
-                return true;
-            }
-        }
-        return false;
+        return StatusPesanan.dari(status) != null;
     }
     
     public void setStatus(String status) {
         if (!isStatusValid(status)) {
             throw new IllegalArgumentException("Status pesanan tidak valid!");
         }
+        setStatus(StatusPesanan.dari(status));
+    }
+    
+    public synchronized void setStatus(StatusPesanan status) {
+        if (status == null) {
+            throw new IllegalArgumentException("Status pesanan tidak valid!");
+        }
+        StatusPesanan statusLama = this.status;
         this.status = status;
+        if (penyimpan != null && statusLama != status) {
+            penyimpan.pindahStatus(this, statusLama);
+        }
     }
+    
+    synchronized void setPenyimpan(OrderStore penyimpan) { this.penyimpan = penyimpan; }
 
     public void tambahItem(MenuItem menuItem) {
         tambahItem(menuItem, 1);
     }
 
     public void tambahItem(MenuItem menuItem, int jumlah) {
-        for (OrderItem item : items) {
-            if (item.getMenuItem().getId().equals(menuItem.getId())) {
-                item.setJumlah(item.getJumlah() + jumlah);
-                return;
-            }
+        tambahItem(menuItem, jumlah, menuItem.getHarga());
+    }
+    
+    // Dipakai juga saat memulihkan pesanan, dengan harga yang tercatat saat dipesan.
+    synchronized void tambahItem(MenuItem menuItem, int jumlah, long harga) {
+        periksaBelumDisimpan();
+        if (jumlah <= 0) {
+            throw new IllegalArgumentException("Jumlah item harus lebih dari 0!");
+        }
+        int i = baris.cari(menuItem.getNomorId());
+        if (i >= 0) {
+            long totalBaru = Rupiah.tambah(total, Rupiah.kali(baris.harga(i), jumlah));
+            baris.tambahJumlah(i, jumlah);
+            total = totalBaru;
+        } else {
+            long totalBaru = Rupiah.tambah(total, Rupiah.kali(harga, jumlah));
+            baris.tambah(menuItem, jumlah, harga);
+            total = totalBaru;
         }
-        items.add(new OrderItem(menuItem, jumlah));
+        jumlahUnit += jumlah;
     }
 
     public boolean hapusItem(String menuItemId) {
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).getMenuItem().getId().equals(menuItemId)) {
-                items.remove(i);
-                return true;
-            }
-        }
-        return false;
+        return hapusItem(IdGenerator.parse(menuItemId));
     }
 
-    public double hitungTotal() {
-        double total = 0;
-        for (OrderItem item : items) {
-            total += item.getSubtotal();
+    public synchronized boolean hapusItem(long menuItemId) {
+        periksaBelumDisimpan();
+        int i = baris.cari(menuItemId);
+        if (i < 0) {
+            return false;
         }
-        return total;
+        total -= Rupiah.kali(baris.harga(i), baris.jumlah(i));
+        jumlahUnit -= baris.jumlah(i);
+        baris.hapus(i);
+        return true;
     }
 
-    @Override
-    public String toString() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-        StringBuilder sb = new StringBuilder();
-        sb.append("===== PESANAN #").append(id).append(" =====\n");
-        sb.append("Meja: ").append(nomorMeja).append("\n");
-        sb.append("Pelanggan: ").append(namaPelanggan).append("\n");
-        sb.append("Waktu: ").append(waktuPesan.format(formatter)).append("\n");
-        sb.append("Status: ").append(status).append("\n\n");
-        
-        sb.append(String.format("%-20s | %s | %-8s | %-8s\n", "Nama Item", "Qty", "Harga", "Subtotal"));
-        sb.append("----------------------------------------------------------\n");
-        
-        for (OrderItem item : items) {
-            sb.append(item.toString()).append("\n");
+    // Baris pesanan tersimpan sudah tercatat di log, laporan, dan buku poin; perubahan sesudahnya
+    // tidak akan ikut tercatat, jadi ditolak.
+    private void periksaBelumDisimpan() {
+        if (penyimpan != null) {
+            throw new IllegalStateException("Pesanan sudah disimpan, item tidak bisa diubah!");
         }
-        
-        sb.append("----------------------------------------------------------\n");
-        sb.append(String.format("TOTAL: Rp %.2f\n", hitungTotal()));
-        
-        return sb.toString();
-    }
-}
-
-class User {
-    private String username;
-    private String password;
-    private String role; 
-    private String nama;
-
-    public User(String username, String password, String role, String nama) {
-        this.username = username;
-        this.password = password;
-        this.role = role;
-        this.nama = nama;
     }
 
-    public String getUsername() { return username; }
-    public String getPassword() { return password; }
-    public String getRole() { return role; }
-    public String getNama() { return nama; }
-    
-    public String getInfo() {
-        return String.format("Username: %s | Nama: %s | Role: %s", username, nama, role);
+    public long hitungTotal() {
+        return total;
     }
     
-    public boolean authenticate(String password) {
-        return this.password.equals(password);
+    public long getPotongan() {
+        return potongan;
     }
-}
-
-class Admin extends User {
-    private String departemen;
-    private int levelAkses;
     
-    public Admin(String username, String password, String nama, String departemen, int levelAkses) {
-        super(username, password, "admin", nama);
-        this.departemen = departemen;
-        setLevelAkses(levelAkses);
+    public long hitungTotalBayar() {
+        return total - potongan;
     }
     
-    public String getDepartemen() { return departemen; }
-    
-    public void setDepartemen(String departemen) {
-        if (departemen == null || departemen.trim().isEmpty()) {
-            throw new IllegalArgumentException("Departemen tidak boleh kosong!");
+    synchronized void setPotongan(long potongan) {
+        if (potongan < 0 || potongan > total) {
+            throw new IllegalArgumentException("Potongan tidak boleh melebihi total pesanan!");
         }
-        this.departemen = departemen;
+        this.potongan = potongan;
     }
     
-    public int getLevelAkses() { return levelAkses; }
+    public synchronized int getJumlahBaris() {
+        return baris.ukuran();
+    }
     
-    public void setLevelAkses(int levelAkses) {
-        if (levelAkses < 1 || levelAkses > 3) {
-            throw new IllegalArgumentException("Level akses harus antara 1-3!");
-        }
-        this.levelAkses = levelAkses;
+    synchronized void padatkan() {
+        baris.padatkan();
     }
     
+    public int getJumlahUnit() {
+        return jumlahUnit;
+    }
+
     @Override
-    public String getInfo() {
-        return String.format("%s | Departemen: %s | Level Akses: %d", 
-                super.getInfo(), departemen, levelAkses);
+    public String toString() {
+        return PencetakStruk.untukThreadIni().render(this).toString();
     }
+}
+
+// Merender struk pesanan ke StringBuilder yang dipakai ulang, tanpa String.format maupun
+// DateTimeFormatter. Satu instance tidak thread-safe; gunakan untukThreadIni() jika perlu.
+final class PencetakStruk {
+    private static final ThreadLocal<PencetakStruk> PER_THREAD = ThreadLocal.withInitial(PencetakStruk::new);
+    private static final String GARIS = "----------------------------------------------------------\n";
+    private static final String JUDUL_KOLOM = String.format("%-20s | %s | %-8s | %-8s\n",
+            "Nama Item", "Qty", "Harga", "Subtotal");
+    private static final int LEBAR_NAMA = 20;
+    // Buffer yang membengkak karena pesanan katering tidak ditahan selamanya.
+    private static final int KAPASITAS_MAKS = 64 * 1024;
     
-    public boolean bisaAksesLaporan() {
-        return levelAkses >= 2;
+    private StringBuilder sb = new StringBuilder(1024);
+    private final Order.PengunjungBaris penulisBaris = this::tulisBaris;
+    
+    static PencetakStruk untukThreadIni() {
+        return PER_THREAD.get();
+    }
+    
+    // Hasilnya hanya valid sampai render berikutnya pada instance yang sama.
+    StringBuilder render(Order order) {
+        if (sb.capacity() > KAPASITAS_MAKS) {
+            sb = new StringBuilder(1024);
+        }
+        sb.setLength(0);
+        // Dikunci pada pesanan agar baris dan total dibaca dari keadaan yang sama.
+        synchronized (order) {
+            sb.append("===== PESANAN #").append(order.getNomorId()).append(" =====\n");
+            sb.append("Meja: ").append(order.getNomorMeja()).append('\n');
+            sb.append("Pelanggan: ").append(order.getNamaPelanggan()).append('\n');
+            sb.append("Waktu: ");
+            tulisWaktu(order.getWaktuPesan());
+            sb.append('\n');
+            sb.append("Status: ").append(order.getStatus()).append("\n\n");
+            
+            sb.append(JUDUL_KOLOM);
+            sb.append(GARIS);
+            order.untukSetiapBaris(penulisBaris);
+            sb.append(GARIS);
+            sb.append("TOTAL: ");
+            Rupiah.tulis(sb, order.hitungTotal()).append('\n');
+            if (order.getPotongan() > 0) {
+                sb.append("POTONGAN: ");
+                Rupiah.tulis(sb, order.getPotongan()).append('\n');
+                sb.append("TOTAL BAYAR: ");
+                Rupiah.tulis(sb, order.hitungTotalBayar()).append('\n');
+            }
+        }
+        return sb;
+    }
+    
+    // Sama dengan format "%-20s | %d | Rp %s | Rp %s" milik OrderItem.
+    private void tulisBaris(MenuItem menu, int jumlah, long harga) {
+        kolomKiri(menu.getNama(), LEBAR_NAMA);
+        sb.append(" | ").append(jumlah).append(" | ");
+        Rupiah.tulis(sb, harga).append(" | ");
+        Rupiah.tulis(sb, Rupiah.kali(harga, jumlah)).append('\n');
+    }
+    
+    private void kolomKiri(String teks, int lebar) {
+        sb.append(teks);
+        for (int i = teks.length(); i < lebar; i++) {
+            sb.append(' ');
+        }
+    }
+    
+    // dd-MM-yyyy HH:mm:ss
+    private void tulisWaktu(LocalDateTime waktu) {
+        dua(waktu.getDayOfMonth()).append('-');
+        dua(waktu.getMonthValue()).append('-');
+        int tahun = waktu.getYear();
+        if (tahun >= 0 && tahun < 1000) {
+            sb.append(tahun < 10 ? "000" : tahun < 100 ? "00" : "0");
+        }
+        sb.append(tahun).append(' ');
+        dua(waktu.getHour()).append(':');
+        dua(waktu.getMinute()).append(':');
+        dua(waktu.getSecond());
+    }
+    
+    private StringBuilder dua(int nilai) {
+        return sb.append((char) ('0' + nilai / 10)).append((char) ('0' + nilai % 10));
+    }
+}
+
+// Password tersimpan sebagai "pbkdf2-sha256$iterasi$salt$hash" (Base64). Nilai tanpa awalan
+// tersebut adalah password teks biasa dari versi lama dan di-hash ulang saat login berhasil
+// atau oleh DomainStore.hashUlangKredensialLama setelah pemulihan.
+final class Kredensial {
+    private static final String AWALAN = "pbkdf2-sha256$";
+    private static final String ALGORITMA = "PBKDF2WithHmacSHA256";
+    // Rekomendasi OWASP untuk PBKDF2-HMAC-SHA256; hash dengan iterasi lebih kecil di-hash ulang.
+    static final int ITERASI = 600_000;
+    private static final int PANJANG_SALT = 16;
+    private static final int PANJANG_HASH_BIT = 256;
+    private static final SecureRandom ACAK = new SecureRandom();
+    
+    private final String tersimpan;
+    
+    private Kredensial(String tersimpan) {
+        this.tersimpan = tersimpan;
+    }
+    
+    static Kredensial buat(String password) {
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Password tidak boleh kosong!");
+        }
+        byte[] salt = new byte[PANJANG_SALT];
+        ACAK.nextBytes(salt);
+        byte[] hash = turunkan(password, salt, ITERASI);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return new Kredensial(AWALAN + ITERASI + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash));
+    }
+    
+    // Nilai dari WAL atau snapshot, dipakai apa adanya tanpa hashing.
+    static Kredensial dariTersimpan(String tersimpan) {
+        if (tersimpan == null) {
+            throw new IllegalArgumentException("Kredensial tidak boleh kosong!");
+        }
+        return new Kredensial(tersimpan);
+    }
+    
+    String tersimpan() { return tersimpan; }
+    
+    boolean isTeksBiasa() { return !tersimpan.startsWith(AWALAN); }
+    
+    boolean perluHashUlang() {
+        return isTeksBiasa() || iterasi() < ITERASI;
+    }
+    
+    // Lambat secara sengaja; dari thread layanan sebaiknya lewat VerifikatorKredensial.
+    boolean cocok(String password) {
+        if (password == null) {
+            return false;
+        }
+        if (isTeksBiasa()) {
+            return MessageDigest.isEqual(tersimpan.getBytes(StandardCharsets.UTF_8),
+                    password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] bagian = tersimpan.substring(AWALAN.length()).split("\\$");
+        if (bagian.length != 3) {
+            return false;
+        }
+        try {
+            byte[] salt = Base64.getDecoder().decode(bagian[1]);
+            byte[] hash = Base64.getDecoder().decode(bagian[2]);
+            return MessageDigest.isEqual(hash, turunkan(password, salt, Integer.parseInt(bagian[0])));
+        } catch (IllegalArgumentException e) {
+            // Kredensial rusak tidak pernah cocok dengan password apa pun.
+            return false;
+        }
+    }
+    
+    private int iterasi() {
+        int akhir = tersimpan.indexOf('$', AWALAN.length());
+        try {
+            return Integer.parseInt(tersimpan.substring(AWALAN.length(), akhir < 0 ? tersimpan.length() : akhir));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private static byte[] turunkan(String password, byte[] salt, int iterasi) {
+        if (iterasi <= 0) {
+            throw new IllegalArgumentException("Jumlah iterasi tidak valid!");
+        }
+        PBEKeySpec spesifikasi = new PBEKeySpec(password.toCharArray(), salt, iterasi, PANJANG_HASH_BIT);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITMA).generateSecret(spesifikasi).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITMA + " tidak tersedia di JVM ini", e);
+        } finally {
+            spesifikasi.clearPassword();
+        }
+    }
+}
+
+// Verifikasi password berjalan di pool berukuran tetap dengan antrean terbatas, supaya lonjakan
+// login saat pergantian shift tidak merebut semua CPU dari layanan pesanan. Jika antrean penuh,
+// login langsung ditolak daripada menumpuk.
+final class VerifikatorKredensial {
+    private final ThreadPoolExecutor pool;
+    private volatile Kredensial pembanding;
+    
+    VerifikatorKredensial(int jumlahThread, int kapasitasAntrean) {
+        AtomicInteger nomor = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(jumlahThread, jumlahThread, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(kapasitasAntrean), tugas -> {
+                    Thread thread = new Thread(tugas, "verifikator-kredensial-" + nomor.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    // Hasil: null jika password salah, kredensial yang sama jika cocok, atau kredensial baru
+    // jika cocok tetapi perlu di-hash ulang. Kredensial null berarti username tidak dikenal.
+    CompletableFuture<Kredensial> verifikasi(Kredensial kredensial, String password) {
+        return jalankan(() -> periksa(kredensial, password), "Terlalu banyak login bersamaan, silakan coba lagi!");
+    }
+    
+    // Password baru juga di-hash di sini supaya pendaftaran ikut dibatasi bersama login.
+    CompletableFuture<Kredensial> buat(String password) {
+        return jalankan(() -> Kredensial.buat(password), "Server sedang sibuk, silakan coba lagi!");
+    }
+    
+    private CompletableFuture<Kredensial> jalankan(Supplier<Kredensial> tugas, String pesanPenuh) {
+        try {
+            return CompletableFuture.supplyAsync(tugas, pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException(pesanPenuh));
+        }
+    }
+    
+    private Kredensial periksa(Kredensial kredensial, String password) {
+        if (kredensial == null) {
+            // Username tidak dikenal tetap menghabiskan waktu yang sama agar tidak bisa ditebak.
+            kredensialPembanding().cocok(password);
+            return null;
+        }
+        if (!kredensial.cocok(password)) {
+            return null;
+        }
+        return kredensial.perluHashUlang() ? Kredensial.buat(password) : kredensial;
+    }
+    
+    private Kredensial kredensialPembanding() {
+        Kredensial k = pembanding;
+        if (k == null) {
+            byte[] acak = new byte[16];
+            new SecureRandom().nextBytes(acak);
+            k = Kredensial.buat(Base64.getEncoder().encodeToString(acak));
+            pembanding = k;
+        }
+        return k;
+    }
+}
+
+class User {
+    private String username;
+    private volatile Kredensial kredensial;
+    private String role; 
+    private String nama;
+
+    // Menghitung PBKDF2 di thread pemanggil (ratusan milidetik); aplikasi memakai
+    // DomainStore.buatKredensial agar hashing lewat pool verifikator.
+    public User(String username, String password, String role, String nama) {
+        this(username, Kredensial.buat(password), role, nama);
+    }
+    
+    User(String username, Kredensial kredensial, String role, String nama) {
+        this.username = username;
+        this.kredensial = kredensial;
+        this.role = role;
+        this.nama = nama;
+    }
+
+    public String getUsername() { return username; }
+    Kredensial getKredensial() { return kredensial; }
+    public String getRole() { return role; }
+    public String getNama() { return nama; }
+    
+    public String getInfo() {
+        return String.format("Username: %s | Nama: %s | Role: %s", username, nama, role);
+    }
+    
+    // Memblokir selama hashing; jalur login memakai DomainStore.login yang lewat pool verifikator.
+    public boolean authenticate(String password) {
+        return kredensial.cocok(password);
+    }
+    
+    // Hanya diganti jika belum diubah pihak lain sejak diverifikasi.
+    synchronized boolean gantiKredensial(Kredensial lama, Kredensial baru) {
+        if (kredensial != lama) {
+            return false;
+        }
+        kredensial = baru;
+        return true;
+    }
+}
+
+class Admin extends User {
+    private String departemen;
+    private int levelAkses;
+    
+    // Seperti User, hashing password memblokir pemanggil.
+    public Admin(String username, String password, String nama, String departemen, int levelAkses) {
+        this(username, Kredensial.buat(password), nama, departemen, levelAkses);
+    }
+    
+    Admin(String username, Kredensial kredensial, String nama, String departemen, int levelAkses) {
+        super(username, kredensial, "admin", nama);
+        this.departemen = departemen;
+        setLevelAkses(levelAkses);
+    }
+    
+    public String getDepartemen() { return departemen; }
+    
+    public void setDepartemen(String departemen) {
+        if (departemen == null || departemen.trim().isEmpty()) {
+            throw new IllegalArgumentException("Departemen tidak boleh kosong!");
+        }
+        this.departemen = departemen;
+    }
+    
+    public int getLevelAkses() { return levelAkses; }
+    
+    public void setLevelAkses(int levelAkses) {
+        if (levelAkses < 1 || levelAkses > 3) {
+            throw new IllegalArgumentException("Level akses harus antara 1-3!");
+        }
+        this.levelAkses = levelAkses;
+    }
+    
+    @Override
+    public String getInfo() {
+        return String.format("%s | Departemen: %s | Level Akses: %d", 
+                super.getInfo(), departemen, levelAkses);
+    }
+    
+    public boolean bisaAksesLaporan() {
+        return levelAkses >= 2;
     }
     
     public boolean bisaManagePengguna() {
@@ -372,9 +1249,20 @@ class Pelanggan extends User {
     private String nomorTelepon;
     private int poin;
     private String level;
+    private int tingkat;
+    
+    // Urutan dari level terendah; indeksnya dipakai TabelHarga.
+    static final String[] LEVEL = {"Bronze", "Silver", "Gold", "Platinum"};
+    // Diskon bawaan per level dalam persen, bisa ditimpa aturan promo.
+    static final int[] DISKON_LEVEL = {0, 5, 10, 15};
     
+    // Seperti User, hashing password memblokir pemanggil.
     public Pelanggan(String username, String password, String nama, String nomorTelepon) {
-        super(username, password, "pelanggan", nama);
+        this(username, Kredensial.buat(password), nama, nomorTelepon);
+    }
+    
+    Pelanggan(String username, Kredensial kredensial, String nama, String nomorTelepon) {
+        super(username, kredensial, "pelanggan", nama);
         this.nomorTelepon = nomorTelepon;
         this.poin = 0;
         updateLevel();
@@ -389,60 +1277,4367 @@ class Pelanggan extends User {
         this.nomorTelepon = nomorTelepon;
     }
     
-    public int getPoin() { return poin; }
+    public synchronized int getPoin() { return poin; }
     
-    public void tambahPoin(int poin) {
+    public synchronized void tambahPoin(int poin) {
         if (poin < 0) {
             throw new IllegalArgumentException("Poin tidak boleh negatif!");
         }
-        this.poin += poin;
-        updateLevel();
+        this.poin += poin;
+        updateLevel();
+    }
+    
+    // Dipakai saat memulihkan dari snapshot atau log, nilainya adalah total poin.
+    synchronized void pulihkanPoin(int poin) {
+        this.poin = poin;
+        updateLevel();
+    }
+    
+    public synchronized String getLevel() { return level; }
+    
+    public synchronized int getTingkat() { return tingkat; }
+    
+    private void updateLevel() {
+        if (poin < 100) {
+            tingkat = 0;
+        } else if (poin < 300) {
+            tingkat = 1;
+        } else if (poin < 500) {
+            tingkat = 2;
+        } else {
+            tingkat = 3;
+        }
+        level = LEVEL[tingkat];
+    }
+    
+    @Override
+    public synchronized String getInfo() {
+        return String.format("%s | Telepon: %s | Poin: %d | Level: %s", 
+                super.getInfo(), nomorTelepon, poin, level);
+    }
+    
+    // Diskon level dalam persen.
+    public synchronized int hitungDiskon() {
+        return DISKON_LEVEL[tingkat];
+    }
+    
+    public long hitungPotongan(long total) {
+        return Rupiah.persen(total, hitungDiskon());
+    }
+}
+
+class MenuSearchIndex {
+    private static final int SUMBER_NAMA = 1;
+    private static final int SUMBER_DESKRIPSI = 2;
+    
+    private static class Simpul {
+        private final Map<Character, Simpul> anak = new HashMap<>();
+        // ID menu -> asal token (nama dan/atau deskripsi)
+        private final Map<Integer, Integer> posting = new HashMap<>();
+    }
+    
+    private static class Kandidat {
+        private int skor = Integer.MAX_VALUE;
+        private int sumber;
+    }
+    
+    private final Simpul akar = new Simpul();
+    private final Map<Integer, Map<String, Integer>> tokenPerMenu = new HashMap<>();
+    
+    public void tambah(MenuItem item) {
+        Map<String, Integer> token = new HashMap<>();
+        for (String kata : pecah(item.getNama())) {
+            token.merge(kata, SUMBER_NAMA, (a, b) -> a | b);
+        }
+        for (String kata : pecah(item.getDeskripsi())) {
+            token.merge(kata, SUMBER_DESKRIPSI, (a, b) -> a | b);
+        }
+        int id = (int) item.getNomorId();
+        for (Map.Entry<String, Integer> entri : token.entrySet()) {
+            Simpul simpul = akar;
+            String kata = entri.getKey();
+            for (int i = 0; i < kata.length(); i++) {
+                simpul = simpul.anak.computeIfAbsent(kata.charAt(i), c -> new Simpul());
+            }
+            simpul.posting.put(id, entri.getValue());
+        }
+        tokenPerMenu.put(id, token);
+    }
+    
+    public void hapus(int id) {
+        Map<String, Integer> token = tokenPerMenu.remove(id);
+        if (token == null) {
+            return;
+        }
+        for (String kata : token.keySet()) {
+            hapusPosting(akar, kata, 0, id);
+        }
+    }
+    
+    public void perbarui(MenuItem item) {
+        hapus((int) item.getNomorId());
+        tambah(item);
+    }
+    
+    // Setiap kata kueri dicocokkan sebagai awalan maupun dengan toleransi salah ketik (jarak edit).
+    public List<Integer> cari(String kueri, int batas) {
+        Map<Integer, Kandidat> hasil = null;
+        for (String kata : pecah(kueri)) {
+            Map<Integer, Kandidat> cocok = new HashMap<>();
+            int jarakMaks = jarakMaksimum(kata);
+            int[] barisAwal = new int[kata.length() + 1];
+            for (int i = 0; i < barisAwal.length; i++) {
+                barisAwal[i] = i;
+            }
+            for (Map.Entry<Character, Simpul> entri : akar.anak.entrySet()) {
+                telusuri(entri.getValue(), entri.getKey(), kata, barisAwal, jarakMaks, false, cocok);
+            }
+            if (hasil == null) {
+                hasil = cocok;
+            } else {
+                Map<Integer, Kandidat> irisan = new HashMap<>();
+                for (Map.Entry<Integer, Kandidat> entri : hasil.entrySet()) {
+                    Kandidat lain = cocok.get(entri.getKey());
+                    if (lain != null) {
+                        Kandidat k = entri.getValue();
+                        k.skor += lain.skor;
+                        k.sumber |= lain.sumber;
+                        irisan.put(entri.getKey(), k);
+                    }
+                }
+                hasil = irisan;
+            }
+            if (hasil.isEmpty()) {
+                break;
+            }
+        }
+        if (hasil == null) {
+            return new ArrayList<>();
+        }
+        
+        Map<Integer, Kandidat> akhir = hasil;
+        List<Integer> daftar = new ArrayList<>(akhir.keySet());
+        daftar.sort((a, b) -> {
+            Kandidat ka = akhir.get(a);
+            Kandidat kb = akhir.get(b);
+            if (ka.skor != kb.skor) {
+                return Integer.compare(ka.skor, kb.skor);
+            }
+            boolean namaA = (ka.sumber & SUMBER_NAMA) != 0;
+            boolean namaB = (kb.sumber & SUMBER_NAMA) != 0;
+            if (namaA != namaB) {
+                return namaA ? -1 : 1;
+            }
+            return Integer.compare(a, b);
+        });
+        return daftar.size() > batas ? new ArrayList<>(daftar.subList(0, batas)) : daftar;
+    }
+    
+    private void telusuri(Simpul simpul, char huruf, String kata, int[] barisSebelum,
+            int jarakMaks, boolean subpohonTercatat, Map<Integer, Kandidat> cocok) {
+        int panjang = kata.length();
+        int[] baris = new int[panjang + 1];
+        baris[0] = barisSebelum[0] + 1;
+        int minimum = baris[0];
+        for (int i = 1; i <= panjang; i++) {
+            int sisip = baris[i - 1] + 1;
+            int hapus = barisSebelum[i] + 1;
+            int ganti = barisSebelum[i - 1] + (kata.charAt(i - 1) == huruf ? 0 : 1);
+            baris[i] = Math.min(Math.min(sisip, hapus), ganti);
+            minimum = Math.min(minimum, baris[i]);
+        }
+        
+        int jarak = baris[panjang];
+        if (jarak <= jarakMaks) {
+            // Kata utuh lebih diutamakan daripada kecocokan awalan dengan jarak yang sama.
+            catat(simpul.posting, jarak * 2, cocok);
+            if (!subpohonTercatat) {
+                for (Simpul anak : simpul.anak.values()) {
+                    kumpulkanSubpohon(anak, jarak * 2 + 1, cocok);
+                }
+                subpohonTercatat = true;
+            }
+        }
+        
+        if (minimum <= jarakMaks) {
+            for (Map.Entry<Character, Simpul> entri : simpul.anak.entrySet()) {
+                telusuri(entri.getValue(), entri.getKey(), kata, baris, jarakMaks, subpohonTercatat, cocok);
+            }
+        }
+    }
+    
+    private void kumpulkanSubpohon(Simpul simpul, int skor, Map<Integer, Kandidat> cocok) {
+        catat(simpul.posting, skor, cocok);
+        for (Simpul anak : simpul.anak.values()) {
+            kumpulkanSubpohon(anak, skor, cocok);
+        }
+    }
+    
+    private static void catat(Map<Integer, Integer> posting, int skor, Map<Integer, Kandidat> cocok) {
+        for (Map.Entry<Integer, Integer> entri : posting.entrySet()) {
+            Kandidat kandidat = cocok.computeIfAbsent(entri.getKey(), id -> new Kandidat());
+            if (skor < kandidat.skor) {
+                kandidat.skor = skor;
+            }
+            kandidat.sumber |= entri.getValue();
+        }
+    }
+    
+    private boolean hapusPosting(Simpul simpul, String kata, int posisi, int id) {
+        if (posisi == kata.length()) {
+            simpul.posting.remove(id);
+        } else {
+            char huruf = kata.charAt(posisi);
+            Simpul anak = simpul.anak.get(huruf);
+            if (anak != null && hapusPosting(anak, kata, posisi + 1, id)) {
+                simpul.anak.remove(huruf);
+            }
+        }
+        return simpul.posting.isEmpty() && simpul.anak.isEmpty();
+    }
+    
+    private static int jarakMaksimum(String kata) {
+        if (kata.length() <= 2) {
+            return 0;
+        }
+        return kata.length() <= 4 ? 1 : 2;
+    }
+    
+    private static List<String> pecah(String teks) {
+        List<String> kata = new ArrayList<>();
+        if (teks == null) {
+            return kata;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < teks.length(); i++) {
+            char c = Character.toLowerCase(teks.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else if (sb.length() > 0) {
+                kata.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (sb.length() > 0) {
+            kata.add(sb.toString());
+        }
+        return kata;
+    }
+}
+
+class MenuCatalog implements Iterable<MenuItem> {
+    // Slot 0 tidak pernah dipakai karena ID menu dimulai dari 1, jadi 0 berarti "tidak ada".
+    private static final int TIDAK_ADA = 0;
+    // Indeks padat hanya cocok untuk ID berurutan, bukan ID berbasis waktu.
+    private static final long ID_MAKSIMUM = Integer.MAX_VALUE - 8;
+    
+    // Katalog jauh lebih sering dibaca daripada diubah, jadi pembaca tidak saling menunggu.
+    private final ReadWriteLock kunci = new ReentrantReadWriteLock();
+    
+    private MenuItem[] slot = new MenuItem[16];
+    private int[] sebelum = new int[16];
+    private int[] sesudah = new int[16];
+    private int kepala = TIDAK_ADA;
+    private int ekor = TIDAK_ADA;
+    private int jumlah = 0;
+    // ID terbesar yang pernah ada di katalog, termasuk menu yang sudah dihapus.
+    private long idTerbesar = 0;
+    
+    private final BitSet semua = new BitSet();
+    private final BitSet tersedia = new BitSet();
+    private final BitSet vegetarian = new BitSet();
+    private final BitSet dingin = new BitSet();
+    private final Map<String, BitSet> perKategori = new HashMap<>();
+    private final Map<String, BitSet> perRoasting = new HashMap<>();
+    private final MenuSearchIndex indeksPencarian = new MenuSearchIndex();
+    private volatile Consumer<MenuItem> pendengarPerubahan;
+    // Naik setiap kali isi katalog berubah; dipakai PapanMenu untuk tahu kapan render ulang.
+    private volatile long versi;
+    
+    void setPendengarPerubahan(Consumer<MenuItem> pendengar) { this.pendengarPerubahan = pendengar; }
+    
+    public void tambah(MenuItem item) {
+        if (item.getNomorId() <= TIDAK_ADA || item.getNomorId() > ID_MAKSIMUM) {
+            throw new IllegalArgumentException("ID menu di luar jangkauan katalog!");
+        }
+        int id = (int) item.getNomorId();
+        kunci.writeLock().lock();
+        try {
+            pastikanKapasitas(id);
+            if (slot[id] != null) {
+                throw new IllegalArgumentException("Menu dengan ID " + item.getId() + " sudah ada!");
+            }
+            slot[id] = item;
+            sebelum[id] = ekor;
+            sesudah[id] = TIDAK_ADA;
+            if (ekor == TIDAK_ADA) {
+                kepala = id;
+            } else {
+                sesudah[ekor] = id;
+            }
+            ekor = id;
+            jumlah++;
+            idTerbesar = Math.max(idTerbesar, id);
+            semua.set(id);
+            indeksAtribut(item);
+            indeksPencarian.tambah(item);
+            item.setKatalog(this);
+            versi++;
+        } finally {
+            kunci.writeLock().unlock();
+        }
+    }
+    
+    public boolean hapus(MenuItem item) {
+        return hapus(item.getNomorId()) != null;
+    }
+    
+    public MenuItem hapus(long nomorId) {
+        kunci.writeLock().lock();
+        try {
+            MenuItem item = cariTanpaKunci(nomorId);
+            if (item == null) {
+                return null;
+            }
+            int id = (int) nomorId;
+            int kiri = sebelum[id];
+            int kanan = sesudah[id];
+            if (kiri == TIDAK_ADA) {
+                kepala = kanan;
+            } else {
+                sesudah[kiri] = kanan;
+            }
+            if (kanan == TIDAK_ADA) {
+                ekor = kiri;
+            } else {
+                sebelum[kanan] = kiri;
+            }
+            slot[id] = null;
+            sebelum[id] = TIDAK_ADA;
+            sesudah[id] = TIDAK_ADA;
+            jumlah--;
+            semua.clear(id);
+            hapusIndeksAtribut(id);
+            indeksPencarian.hapus(id);
+            item.setKatalog(null);
+            versi++;
+            return item;
+        } finally {
+            kunci.writeLock().unlock();
+        }
+    }
+    
+    void perbarui(MenuItem item) {
+        kunci.writeLock().lock();
+        try {
+            if (cariTanpaKunci(item.getNomorId()) != item) {
+                return;
+            }
+            hapusIndeksAtribut((int) item.getNomorId());
+            indeksAtribut(item);
+            indeksPencarian.perbarui(item);
+            versi++;
+        } finally {
+            kunci.writeLock().unlock();
+        }
+        Consumer<MenuItem> pendengar = pendengarPerubahan;
+        if (pendengar != null) {
+            pendengar.accept(item);
+        }
+    }
+    
+    public long getVersi() { return versi; }
+    
+    // Paling banyak batas menu dengan ID lebih besar dari kursor, urut menurut ID.
+    public List<MenuItem> halamanSetelah(long kursor, int batas) {
+        kunci.readLock().lock();
+        try {
+            List<MenuItem> hasil = new ArrayList<>(batas);
+            int mulai = (int) Math.min(Math.max(kursor + 1, 0), ID_MAKSIMUM + 1);
+            for (int id = semua.nextSetBit(mulai); id >= 0 && hasil.size() < batas; id = semua.nextSetBit(id + 1)) {
+                hasil.add(slot[id]);
+            }
+            return hasil;
+        } finally {
+            kunci.readLock().unlock();
+        }
+    }
+    
+    public Kueri kueri() {
+        return new Kueri();
+    }
+    
+    public List<MenuItem> cariNama(String kueri, int batas) {
+        kunci.readLock().lock();
+        try {
+            List<MenuItem> hasil = new ArrayList<>();
+            for (int id : indeksPencarian.cari(kueri, batas)) {
+                hasil.add(slot[id]);
+            }
+            return hasil;
+        } finally {
+            kunci.readLock().unlock();
+        }
+    }
+    
+    private void indeksAtribut(MenuItem item) {
+        int id = (int) item.getNomorId();
+        tersedia.set(id, item.isTersedia());
+        bitmapUntuk(perKategori, item.getKategori()).set(id);
+        if (item instanceof MakananItem) {
+            vegetarian.set(id, ((MakananItem) item).isVegetarian());
+        } else if (item instanceof RestaurantEase.MinumanItem) {
+            dingin.set(id, ((RestaurantEase.MinumanItem) item).isDingin());
+        } else if (item instanceof KopiItem) {
+            String roasting = ((KopiItem) item).getTingkatRoasting();
+            if (roasting != null) {
+                bitmapUntuk(perRoasting, roasting).set(id);
+            }
+        }
+    }
+    
+    private void hapusIndeksAtribut(int id) {
+        tersedia.clear(id);
+        vegetarian.clear(id);
+        dingin.clear(id);
+        for (BitSet bitmap : perKategori.values()) {
+            bitmap.clear(id);
+        }
+        for (BitSet bitmap : perRoasting.values()) {
+            bitmap.clear(id);
+        }
+    }
+    
+    private static BitSet bitmapUntuk(Map<String, BitSet> indeks, String kunci) {
+        return indeks.computeIfAbsent(normalisasi(kunci), k -> new BitSet());
+    }
+    
+    private static String normalisasi(String kunci) {
+        return kunci.trim().toLowerCase();
+    }
+    
+    public class Kueri {
+        private final BitSet hasil;
+        
+        private Kueri() {
+            kunci.readLock().lock();
+            try {
+                hasil = (BitSet) semua.clone();
+            } finally {
+                kunci.readLock().unlock();
+            }
+        }
+        
+        public Kueri tersedia() {
+            return dan(tersedia);
+        }
+        
+        public Kueri kategori(String kategori) {
+            return dan(perKategori, kategori);
+        }
+        
+        public Kueri vegetarian() {
+            return dan(vegetarian);
+        }
+        
+        public Kueri dingin() {
+            return dan(dingin);
+        }
+        
+        public Kueri roasting(String tingkatRoasting) {
+            return dan(perRoasting, tingkatRoasting);
+        }
+        
+        private Kueri dan(Map<String, BitSet> indeks, String kunciIndeks) {
+            kunci.readLock().lock();
+            try {
+                BitSet bitmap = indeks.get(normalisasi(kunciIndeks));
+                if (bitmap == null) {
+                    hasil.clear();
+                } else {
+                    hasil.and(bitmap);
+                }
+            } finally {
+                kunci.readLock().unlock();
+            }
+            return this;
+        }
+        
+        private Kueri dan(BitSet bitmap) {
+            kunci.readLock().lock();
+            try {
+                hasil.and(bitmap);
+            } finally {
+                kunci.readLock().unlock();
+            }
+            return this;
+        }
+        
+        public int jumlah() {
+            return hasil.cardinality();
+        }
+        
+        public List<MenuItem> hasil() {
+            kunci.readLock().lock();
+            try {
+                List<MenuItem> daftar = new ArrayList<>(hasil.cardinality());
+                for (int id = hasil.nextSetBit(0); id >= 0; id = hasil.nextSetBit(id + 1)) {
+                    if (slot[id] != null) {
+                        daftar.add(slot[id]);
+                    }
+                }
+                return daftar;
+            } finally {
+                kunci.readLock().unlock();
+            }
+        }
+    }
+    
+    public MenuItem cari(long id) {
+        kunci.readLock().lock();
+        try {
+            return cariTanpaKunci(id);
+        } finally {
+            kunci.readLock().unlock();
+        }
+    }
+    
+    public MenuItem cari(String id) {
+        return cari(IdGenerator.parse(id));
+    }
+    
+    private MenuItem cariTanpaKunci(long id) {
+        if (id <= TIDAK_ADA || id >= slot.length) {
+            return null;
+        }
+        return slot[(int) id];
+    }
+    
+    public int ukuran() {
+        kunci.readLock().lock();
+        try {
+            return jumlah;
+        } finally {
+            kunci.readLock().unlock();
+        }
+    }
+    
+    public boolean isEmpty() { return ukuran() == 0; }
+    
+    public long getIdTerbesar() {
+        kunci.readLock().lock();
+        try {
+            return idTerbesar;
+        } finally {
+            kunci.readLock().unlock();
+        }
+    }
+    
+    void catatIdTerbesar(long id) {
+        kunci.writeLock().lock();
+        try {
+            idTerbesar = Math.max(idTerbesar, id);
+        } finally {
+            kunci.writeLock().unlock();
+        }
+    }
+    
+    // Iterasi memakai salinan agar pembaca tidak menahan kunci selama menampilkan menu.
+    @Override
+    public Iterator<MenuItem> iterator() {
+        kunci.readLock().lock();
+        try {
+            List<MenuItem> salinan = new ArrayList<>(jumlah);
+            for (int id = kepala; id != TIDAK_ADA; id = sesudah[id]) {
+                salinan.add(slot[id]);
+            }
+            return salinan.iterator();
+        } finally {
+            kunci.readLock().unlock();
+        }
+    }
+    
+    private void pastikanKapasitas(int id) {
+        if (id < slot.length) {
+            return;
+        }
+        int kapasitasBaru = (int) Math.min(ID_MAKSIMUM + 1, Math.max((long) slot.length * 2, id + 1L));
+        slot = Arrays.copyOf(slot, kapasitasBaru);
+        sebelum = Arrays.copyOf(sebelum, kapasitasBaru);
+        sesudah = Arrays.copyOf(sesudah, kapasitasBaru);
+    }
+}
+
+// Halaman daftar menu yang sudah dirender; dibangun ulang hanya jika versi katalog berubah,
+// dan saat itu pun hanya menu yang berubah yang benar-benar diformat ulang.
+final class PapanMenu {
+    private static final String GARIS_JUDUL =
+            "------------------------------------------------------------------------------------------------------------------\n";
+    private static final String GARIS_MENU =
+            "--------------------------------------------------------------------------------------------------------------\n";
+    // Dipakai juga konsol terminal yang membaca katalog bersama, supaya tampilannya sama.
+    static final String JUDUL = String.format("%-10s | %-20s | %-10s | %-10s | %s\n",
+            "ID", "Nama", "Kategori", "Harga", "Status") + GARIS_JUDUL;
+    
+    static final class Halaman {
+        private final long versi;
+        private final long kursor;
+        private final int ukuran;
+        private final String teks;
+        private final long kursorBerikutnya;
+        private final boolean adaBerikutnya;
+        
+        private Halaman(long versi, long kursor, int ukuran, String teks, long kursorBerikutnya,
+                boolean adaBerikutnya) {
+            this.versi = versi;
+            this.kursor = kursor;
+            this.ukuran = ukuran;
+            this.teks = teks;
+            this.kursorBerikutnya = kursorBerikutnya;
+            this.adaBerikutnya = adaBerikutnya;
+        }
+        
+        public String getTeks() { return teks; }
+        
+        public long getKursorBerikutnya() { return kursorBerikutnya; }
+        
+        public boolean adaBerikutnya() { return adaBerikutnya; }
+    }
+    
+    private final MenuCatalog katalog;
+    // Yang paling sering ditampilkan berulang adalah halaman pertama, jadi satu entri cukup.
+    private volatile Halaman terakhir;
+    
+    PapanMenu(MenuCatalog katalog) {
+        this.katalog = katalog;
+    }
+    
+    // Kursor 0 berarti halaman pertama; berikutnya pakai getKursorBerikutnya().
+    Halaman halaman(long kursor, int ukuran) {
+        long versi = katalog.getVersi();
+        Halaman h = terakhir;
+        if (h != null && h.versi == versi && h.kursor == kursor && h.ukuran == ukuran) {
+            return h;
+        }
+        // Satu menu ekstra diambil hanya untuk tahu apakah masih ada halaman berikutnya.
+        List<MenuItem> isi = katalog.halamanSetelah(kursor, ukuran + 1);
+        boolean adaBerikutnya = isi.size() > ukuran;
+        StringBuilder sb = new StringBuilder(JUDUL);
+        long kursorBerikutnya = kursor;
+        for (int i = 0; i < isi.size() && i < ukuran; i++) {
+            MenuItem item = isi.get(i);
+            tulisMenu(sb, item.teksTampilan(), item.deskripsiTampilan());
+            kursorBerikutnya = item.getNomorId();
+        }
+        h = new Halaman(versi, kursor, ukuran, sb.toString(), kursorBerikutnya, adaBerikutnya);
+        terakhir = h;
+        return h;
+    }
+    
+    static void tulisMenu(StringBuilder sb, String teks, String deskripsi) {
+        sb.append(teks).append('\n');
+        sb.append("Deskripsi: ").append(deskripsi).append('\n');
+        sb.append(GARIS_MENU);
+    }
+}
+
+class OrderStore implements Iterable<Order> {
+    private static final int KAPASITAS_TERBARU = 5;
+    
+    private static class RiwayatPelanggan {
+        private final List<Order> pesanan = new ArrayList<>();
+        private final Order[] terbaru = new Order[KAPASITAS_TERBARU];
+        private int posisi = 0;
+        
+        private synchronized void tambah(Order order) {
+            pesanan.add(order);
+            terbaru[posisi] = order;
+            posisi = (posisi + 1) % KAPASITAS_TERBARU;
+        }
+        
+        private synchronized List<Order> semuaPesanan() {
+            return new ArrayList<>(pesanan);
+        }
+        
+        private synchronized int jumlah() {
+            return pesanan.size();
+        }
+        
+        private synchronized List<Order> halamanDari(int posisi, int batas) {
+            int akhir = Math.min(pesanan.size(), posisi + batas);
+            return posisi >= akhir ? Collections.emptyList() : new ArrayList<>(pesanan.subList(posisi, akhir));
+        }
+        
+        private synchronized List<Order> daftarTerbaru() {
+            List<Order> daftar = new ArrayList<>(KAPASITAS_TERBARU);
+            for (int i = 1; i <= KAPASITAS_TERBARU; i++) {
+                Order order = terbaru[(posisi - i + KAPASITAS_TERBARU) % KAPASITAS_TERBARU];
+                if (order == null) {
+                    break;
+                }
+                daftar.add(order);
+            }
+            return daftar;
+        }
+    }
+    
+    // Riwayat global hanya ditulis saat pesanan baru masuk; indeks lain dikunci per pelanggan
+    // dan per status supaya terminal yang berbeda jarang berebut kunci yang sama.
+    private final ReadWriteLock kunciRiwayat = new ReentrantReadWriteLock();
+    private final List<Order> semua = new ArrayList<>();
+    private final Map<Long, Order> perId = new ConcurrentHashMap<>();
+    private final Map<String, RiwayatPelanggan> perPelanggan = new ConcurrentHashMap<>();
+    private final Map<StatusPesanan, Set<Order>> perStatus = new EnumMap<>(StatusPesanan.class);
+    private volatile Consumer<Order> pendengarStatus;
+    private volatile Consumer<Order> pendengarTambah;
+    private final AtomicLong idTerbesar = new AtomicLong();
+    
+    public OrderStore() {
+        for (StatusPesanan status : StatusPesanan.values()) {
+            perStatus.put(status, new LinkedHashSet<>());
+        }
+    }
+    
+    public void tambah(Order order) {
+        order.padatkan();
+        if (perId.putIfAbsent(order.getNomorId(), order) != null) {
+            throw new IllegalArgumentException("Pesanan dengan ID " + order.getId() + " sudah ada!");
+        }
+        catatIdTerbesar(order.getNomorId());
+        kunciRiwayat.writeLock().lock();
+        try {
+            semua.add(order);
+        } finally {
+            kunciRiwayat.writeLock().unlock();
+        }
+        perPelanggan.computeIfAbsent(order.getKunciPelanggan(), k -> new RiwayatPelanggan()).tambah(order);
+        // Dikunci pada pesanan agar tidak balapan dengan Order.setStatus yang memindahkan antrean.
+        synchronized (order) {
+            Set<Order> antrean = perStatus.get(order.getStatusPesanan());
+            synchronized (antrean) {
+                antrean.add(order);
+            }
+            order.setPenyimpan(this);
+        }
+        Consumer<Order> pendengar = pendengarTambah;
+        if (pendengar != null) {
+            pendengar.accept(order);
+        }
+    }
+    
+    // Dipanggil oleh Order.setStatus sambil memegang kunci pesanan tersebut.
+    void pindahStatus(Order order, StatusPesanan statusLama) {
+        Set<Order> antreanLama = perStatus.get(statusLama);
+        boolean terhapus;
+        synchronized (antreanLama) {
+            terhapus = antreanLama.remove(order);
+        }
+        if (terhapus) {
+            Set<Order> antreanBaru = perStatus.get(order.getStatusPesanan());
+            synchronized (antreanBaru) {
+                antreanBaru.add(order);
+            }
+            Consumer<Order> pendengar = pendengarStatus;
+            if (pendengar != null) {
+                pendengar.accept(order);
+            }
+        }
+    }
+    
+    void setPendengarStatus(Consumer<Order> pendengar) { this.pendengarStatus = pendengar; }
+    
+    void setPendengarTambah(Consumer<Order> pendengar) { this.pendengarTambah = pendengar; }
+    
+    public Order cari(long id) {
+        return perId.get(id);
+    }
+    
+    public Order cari(String id) {
+        return cari(IdGenerator.parse(id));
+    }
+    
+    // Pesanan urut waktu masuk mulai dari posisi tersebut; riwayat hanya bertambah,
+    // jadi posisi tetap sah sebagai kursor walaupun pesanan baru terus masuk.
+    public List<Order> halamanDari(int posisi, int batas) {
+        kunciRiwayat.readLock().lock();
+        try {
+            int akhir = Math.min(semua.size(), posisi + batas);
+            return posisi >= akhir ? Collections.emptyList() : new ArrayList<>(semua.subList(posisi, akhir));
+        } finally {
+            kunciRiwayat.readLock().unlock();
+        }
+    }
+    
+    public int jumlahHalaman(int ukuranHalaman) {
+        return (ukuran() + ukuranHalaman - 1) / ukuranHalaman;
+    }
+    
+    public List<Order> pesananDenganStatus(StatusPesanan status) {
+        Set<Order> antrean = perStatus.get(status);
+        synchronized (antrean) {
+            return new ArrayList<>(antrean);
+        }
+    }
+    
+    public int jumlahDenganStatus(StatusPesanan status) {
+        Set<Order> antrean = perStatus.get(status);
+        synchronized (antrean) {
+            return antrean.size();
+        }
+    }
+    
+    public List<Order> pesananPelanggan(String kunciPelanggan) {
+        RiwayatPelanggan riwayat = perPelanggan.get(kunciPelanggan);
+        if (riwayat == null) {
+            return Collections.emptyList();
+        }
+        return riwayat.semuaPesanan();
+    }
+    
+    // Seperti halamanDari, tetapi hanya pesanan satu pelanggan, urut waktu masuk.
+    public List<Order> halamanPelangganDari(String kunciPelanggan, int posisi, int batas) {
+        RiwayatPelanggan riwayat = perPelanggan.get(kunciPelanggan);
+        if (riwayat == null) {
+            return Collections.emptyList();
+        }
+        return riwayat.halamanDari(posisi, batas);
+    }
+    
+    public List<Order> pesananTerbaru(String kunciPelanggan) {
+        RiwayatPelanggan riwayat = perPelanggan.get(kunciPelanggan);
+        if (riwayat == null) {
+            return Collections.emptyList();
+        }
+        return riwayat.daftarTerbaru();
+    }
+    
+    public int jumlahPesananPelanggan(String kunciPelanggan) {
+        RiwayatPelanggan riwayat = perPelanggan.get(kunciPelanggan);
+        return riwayat == null ? 0 : riwayat.jumlah();
+    }
+    
+    public int ukuran() {
+        kunciRiwayat.readLock().lock();
+        try {
+            return semua.size();
+        } finally {
+            kunciRiwayat.readLock().unlock();
+        }
+    }
+    
+    public boolean isEmpty() { return ukuran() == 0; }
+    
+    // ID terbesar yang pernah disimpan atau dicadangkan, termasuk pesanan selesai yang tidak ikut dimuat dari snapshot.
+    public long getIdTerbesar() { return idTerbesar.get(); }
+    
+    void catatIdTerbesar(long id) {
+        idTerbesar.accumulateAndGet(id, Math::max);
+    }
+    
+    public Order[] salinArsip() {
+        kunciRiwayat.readLock().lock();
+        try {
+            return semua.toArray(new Order[0]);
+        } finally {
+            kunciRiwayat.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public Iterator<Order> iterator() {
+        kunciRiwayat.readLock().lock();
+        try {
+            return new ArrayList<>(semua).iterator();
+        } finally {
+            kunciRiwayat.readLock().unlock();
+        }
+    }
+}
+
+class LaporanPenjualan {
+    private static final String[] KATEGORI = {"Kopi", "Makanan", "Minuman"};
+    
+    static final class Agregat {
+        private long pendapatan;
+        private long jumlahItem;
+        private long jumlahPesanan;
+        
+        private Agregat() {
+        }
+        
+        private Agregat(Agregat asal) {
+            this.pendapatan = asal.pendapatan;
+            this.jumlahItem = asal.jumlahItem;
+            this.jumlahPesanan = asal.jumlahPesanan;
+        }
+        
+        public long getPendapatan() { return pendapatan; }
+        
+        public long getJumlahItem() { return jumlahItem; }
+        
+        public long getJumlahPesanan() { return jumlahPesanan; }
+        
+        private void tambah(long pendapatan, long jumlahItem, long jumlahPesanan) {
+            this.pendapatan = Rupiah.tambah(this.pendapatan, pendapatan);
+            this.jumlahItem += jumlahItem;
+            this.jumlahPesanan += jumlahPesanan;
+        }
+        
+        private boolean isKosong() {
+            return jumlahItem == 0 && jumlahPesanan == 0;
+        }
+    }
+    
+    private static final class KunciSel {
+        private final long jam;
+        private final String kategori;
+        private final long idMenu;
+        
+        private KunciSel(long jam, String kategori, long idMenu) {
+            this.jam = jam;
+            this.kategori = kategori;
+            this.idMenu = idMenu;
+        }
+        
+        @Override
+        public boolean equals(Object lain) {
+            if (!(lain instanceof KunciSel)) {
+                return false;
+            }
+            KunciSel k = (KunciSel) lain;
+            return jam == k.jam && idMenu == k.idMenu && kategori.equals(k.kategori);
+        }
+        
+        @Override
+        public int hashCode() {
+            return (Long.hashCode(jam) * 31 + kategori.hashCode()) * 31 + Long.hashCode(idMenu);
+        }
+    }
+    
+    private static final class KunciKategori {
+        private final long hari;
+        private final String kategori;
+        
+        private KunciKategori(long hari, String kategori) {
+            this.hari = hari;
+            this.kategori = kategori;
+        }
+        
+        @Override
+        public boolean equals(Object lain) {
+            if (!(lain instanceof KunciKategori)) {
+                return false;
+            }
+            KunciKategori k = (KunciKategori) lain;
+            return hari == k.hari && kategori.equals(k.kategori);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hari) * 31 + kategori.hashCode();
+        }
+    }
+    
+    // Apa yang ditambahkan satu pesanan, disimpan agar pembatalan mengurangi angka yang sama
+    // meskipun harga menu sudah berubah sejak pesanan dihitung.
+    private static final class Kontribusi {
+        private final KunciSel sel;
+        private final int jumlah;
+        private final long pendapatan;
+        
+        private Kontribusi(KunciSel sel, int jumlah, long pendapatan) {
+            this.sel = sel;
+            this.jumlah = jumlah;
+            this.pendapatan = pendapatan;
+        }
+    }
+    
+    // Rollup per jam x kategori x menu; agregat harian, mingguan dan harian per kategori
+    // diperbarui bersamaan sehingga laporan cukup satu kali lookup.
+    private final Map<KunciSel, Agregat> perJam = new HashMap<>();
+    private final Map<Long, Agregat> perHari = new HashMap<>();
+    private final Map<Long, Agregat> perMinggu = new HashMap<>();
+    private final Map<KunciKategori, Agregat> perHariKategori = new HashMap<>();
+    private final Map<Long, List<Kontribusi>> terhitung = new HashMap<>();
+    
+    // Dipanggil saat pesanan masuk OrderStore dan setiap kali statusnya berubah, termasuk saat pemulihan.
+    public synchronized void statusDiubah(Order order) {
+        boolean selesai = order.getStatusPesanan() == StatusPesanan.SELESAI;
+        boolean sudahDihitung = terhitung.containsKey(order.getNomorId());
+        if (selesai && !sudahDihitung) {
+            hitung(order);
+        } else if (!selesai && sudahDihitung) {
+            batalkan(order);
+        }
+    }
+    
+    private void hitung(Order order) {
+        List<Kontribusi> kontribusi = kontribusiDari(order);
+        terhitung.put(order.getNomorId(), kontribusi);
+        terapkan(jamDari(order.getWaktuPesan()), kontribusi, 1);
+    }
+    
+    private void batalkan(Order order) {
+        List<Kontribusi> kontribusi = terhitung.remove(order.getNomorId());
+        terapkan(jamDari(order.getWaktuPesan()), kontribusi, -1);
+    }
+    
+    private static List<Kontribusi> kontribusiDari(Order order) {
+        long jam = jamDari(order.getWaktuPesan());
+        List<Kontribusi> kontribusi = new ArrayList<>();
+        order.untukSetiapBaris((menu, jumlah, harga) -> {
+            KunciSel sel = new KunciSel(jam, kunciKategori(menu.getKategori()), menu.getNomorId());
+            kontribusi.add(new Kontribusi(sel, jumlah, Rupiah.kali(harga, jumlah)));
+        });
+        return kontribusi;
+    }
+    
+    private void terapkan(long jam, List<Kontribusi> kontribusi, int arah) {
+        long hari = Math.floorDiv(jam, 24);
+        long total = 0;
+        long jumlahItem = 0;
+        for (Kontribusi k : kontribusi) {
+            ubah(perJam, k.sel, arah * k.pendapatan, arah * k.jumlah, 0);
+            ubah(perHariKategori, new KunciKategori(hari, k.sel.kategori), arah * k.pendapatan, arah * k.jumlah, 0);
+            total = Rupiah.tambah(total, k.pendapatan);
+            jumlahItem += k.jumlah;
+        }
+        ubah(perHari, hari, arah * total, arah * jumlahItem, arah);
+        ubah(perMinggu, awalMinggu(hari), arah * total, arah * jumlahItem, arah);
+    }
+    
+    private static <K> void ubah(Map<K, Agregat> peta, K kunci, long pendapatan, long jumlahItem, long jumlahPesanan) {
+        Agregat agregat = peta.computeIfAbsent(kunci, k -> new Agregat());
+        agregat.tambah(pendapatan, jumlahItem, jumlahPesanan);
+        if (agregat.isKosong()) {
+            peta.remove(kunci);
+        }
+    }
+    
+    public synchronized Agregat harian(LocalDate tanggal) {
+        return salin(perHari.get(tanggal.toEpochDay()));
+    }
+    
+    // Minggu dihitung Senin sampai Minggu yang memuat tanggal tersebut.
+    public synchronized Agregat mingguan(LocalDate tanggal) {
+        return salin(perMinggu.get(awalMinggu(tanggal.toEpochDay())));
+    }
+    
+    public synchronized Map<String, Agregat> harianPerKategori(LocalDate tanggal) {
+        Map<String, Agregat> hasil = new LinkedHashMap<>();
+        for (String kategori : KATEGORI) {
+            hasil.put(kategori, salin(perHariKategori.get(new KunciKategori(tanggal.toEpochDay(), kunciKategori(kategori)))));
+        }
+        return hasil;
+    }
+    
+    private static Agregat salin(Agregat agregat) {
+        return agregat == null ? new Agregat() : new Agregat(agregat);
+    }
+    
+    private static long jamDari(LocalDateTime waktu) {
+        return Math.floorDiv(waktu.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+    
+    private static long awalMinggu(long hari) {
+        return hari - (LocalDate.ofEpochDay(hari).getDayOfWeek().getValue() - 1);
+    }
+    
+    private static String kunciKategori(String kategori) {
+        return kategori.toLowerCase();
+    }
+}
+
+// Laporan ad hoc atas seluruh arsip pesanan: arsip dibagi menjadi potongan dan setiap
+// worker fork-join mengisi akumulatornya sendiri, lalu hasilnya digabung saat join.
+final class LaporanArsip {
+    private static final int UKURAN_POTONGAN = 8192;
+    private static final String[] KATEGORI = {"Kopi", "Makanan", "Minuman"};
+    
+    static final class Hasil {
+        private final long[] pendapatan = new long[KATEGORI.length];
+        private final long[] jumlahItem = new long[KATEGORI.length];
+        private long jumlahPesanan;
+        
+        private void gabung(Hasil lain) {
+            for (int i = 0; i < KATEGORI.length; i++) {
+                pendapatan[i] = Rupiah.tambah(pendapatan[i], lain.pendapatan[i]);
+                jumlahItem[i] += lain.jumlahItem[i];
+            }
+            jumlahPesanan += lain.jumlahPesanan;
+        }
+        
+        public int jumlahKategori() { return KATEGORI.length; }
+        
+        public String getKategori(int i) { return KATEGORI[i]; }
+        
+        public long getPendapatan(int i) { return pendapatan[i]; }
+        
+        public long getJumlahItem(int i) { return jumlahItem[i]; }
+        
+        public long getJumlahPesanan() { return jumlahPesanan; }
+        
+        public long getTotalPendapatan() {
+            long total = 0;
+            for (long nilai : pendapatan) {
+                total = Rupiah.tambah(total, nilai);
+            }
+            return total;
+        }
+    }
+    
+    private static final class Tugas extends RecursiveTask<Hasil> {
+        private static final long serialVersionUID = 1L;
+        private final Order[] arsip;
+        private final int awal;
+        private final int akhir;
+        private final LocalDateTime dari;
+        private final LocalDateTime sampai;
+        
+        private Tugas(Order[] arsip, int awal, int akhir, LocalDateTime dari, LocalDateTime sampai) {
+            this.arsip = arsip;
+            this.awal = awal;
+            this.akhir = akhir;
+            this.dari = dari;
+            this.sampai = sampai;
+        }
+        
+        @Override
+        protected Hasil compute() {
+            if (akhir - awal <= UKURAN_POTONGAN) {
+                return hitungLangsung();
+            }
+            int tengah = (awal + akhir) >>> 1;
+            Tugas kiri = new Tugas(arsip, awal, tengah, dari, sampai);
+            kiri.fork();
+            Hasil hasil = new Tugas(arsip, tengah, akhir, dari, sampai).compute();
+            hasil.gabung(kiri.join());
+            return hasil;
+        }
+        
+        private Hasil hitungLangsung() {
+            Hasil hasil = new Hasil();
+            for (int i = awal; i < akhir; i++) {
+                Order order = arsip[i];
+                if (order.getStatusPesanan() != StatusPesanan.SELESAI
+                        || order.getWaktuPesan().isBefore(dari) || !order.getWaktuPesan().isBefore(sampai)) {
+                    continue;
+                }
+                hasil.jumlahPesanan++;
+                order.untukSetiapBaris((menu, jumlah, harga) -> {
+                    int k = indeksKategori(menu.getKategori());
+                    hasil.pendapatan[k] = Rupiah.tambah(hasil.pendapatan[k], Rupiah.kali(harga, jumlah));
+                    hasil.jumlahItem[k] += jumlah;
+                });
+            }
+            return hasil;
+        }
+    }
+    
+    private LaporanArsip() {
+    }
+    
+    // Pendapatan per kategori untuk pesanan Selesai dengan waktu pesan di [dari, sampai).
+    static Hasil pendapatanPerKategori(Order[] arsip, LocalDateTime dari, LocalDateTime sampai, ForkJoinPool pool) {
+        return pool.invoke(new Tugas(arsip, 0, arsip.length, dari, sampai));
+    }
+    
+    static Hasil pendapatanPerKategori(Order[] arsip, LocalDateTime dari, LocalDateTime sampai) {
+        return pendapatanPerKategori(arsip, dari, sampai, ForkJoinPool.commonPool());
+    }
+    
+    private static int indeksKategori(String kategori) {
+        for (int i = 0; i < KATEGORI.length - 1; i++) {
+            if (KATEGORI[i].equalsIgnoreCase(kategori)) {
+                return i;
+            }
+        }
+        return KATEGORI.length - 1;
+    }
+}
+
+// Konteks satu sesi login: siapa penggunanya dan hak aksesnya, dicatat saat login.
+final class Sesi {
+    private final String token;
+    private final User user;
+    private final String role;
+    private final int levelAkses;
+    // Dalam satuan tick ManajerSesi; cukup ditulis, roda membaca saat slotnya tiba.
+    volatile long aksesTerakhir;
+    volatile boolean berakhir;
+    // Hanya disentuh thread roda.
+    Sesi berikutnya;
+    long putaran;
+    
+    Sesi(String token, User user, long tick) {
+        this.token = token;
+        this.user = user;
+        this.role = user.getRole();
+        this.levelAkses = user instanceof Admin ? ((Admin) user).getLevelAkses() : 0;
+        this.aksesTerakhir = tick;
+    }
+    
+    public String getToken() { return token; }
+    public User getUser() { return user; }
+    public String getRole() { return role; }
+    public int getLevelAkses() { return levelAkses; }
+}
+
+// Tabel sesi dengan token acak. Sesi yang menganggur dibuang oleh hashed timer wheel: setiap
+// sesi ada di tepat satu slot, dan akses hanya memperbarui aksesTerakhir tanpa memindahkan
+// sesi. Saat slotnya tiba, sesi yang ternyata masih dipakai dijadwalkan ulang ke tenggat
+// barunya, sehingga biaya roda sebanding dengan jumlah sesi, bukan jumlah akses.
+final class ManajerSesi {
+    private static final int PANJANG_TOKEN = 24;
+    
+    private final ConcurrentHashMap<String, Sesi> aktif = new ConcurrentHashMap<>();
+    // Sesi baru masuk ke sini dulu agar roda hanya diubah oleh satu thread.
+    private final Queue<Sesi> antreanBaru = new ConcurrentLinkedQueue<>();
+    private final SecureRandom acak = new SecureRandom();
+    private final Clock jam;
+    private final long mulaiMilis;
+    private final long durasiTickMilis;
+    private final long batasDiamTick;
+    private final Sesi[] roda;
+    private final int mask;
+    private final AtomicBoolean pembersihJalan = new AtomicBoolean();
+    private long tickDiproses;
+    
+    public ManajerSesi() {
+        this(Duration.ofMinutes(30), Duration.ofSeconds(1), 512, Clock.systemUTC());
+    }
+    
+    ManajerSesi(Duration batasDiam, Duration durasiTick, int ukuranRoda, Clock jam) {
+        if (Integer.bitCount(ukuranRoda) != 1) {
+            throw new IllegalArgumentException("Ukuran roda harus pangkat dua!");
+        }
+        this.jam = jam;
+        this.mulaiMilis = jam.millis();
+        this.durasiTickMilis = Math.max(1, durasiTick.toMillis());
+        this.batasDiamTick = Math.max(1, batasDiam.toMillis() / durasiTickMilis);
+        this.roda = new Sesi[ukuranRoda];
+        this.mask = ukuranRoda - 1;
+    }
+    
+    public Sesi buat(User user) {
+        byte[] acakan = new byte[PANJANG_TOKEN];
+        acak.nextBytes(acakan);
+        Sesi sesi = new Sesi(Base64.getUrlEncoder().withoutPadding().encodeToString(acakan), user, tickSekarang());
+        aktif.put(sesi.getToken(), sesi);
+        antreanBaru.add(sesi);
+        if (!pembersihJalan.get() && pembersihJalan.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::jalankanPembersih, "roda-sesi");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return sesi;
+    }
+    
+    // Null jika token tidak dikenal atau sesinya sudah terlalu lama menganggur.
+    public Sesi cari(String token) {
+        Sesi sesi = token == null ? null : aktif.get(token);
+        if (sesi == null || sesi.berakhir) {
+            return null;
+        }
+        long sekarang = tickSekarang();
+        long terakhir = sesi.aksesTerakhir;
+        if (sekarang - terakhir >= batasDiamTick) {
+            return null;
+        }
+        // Menulis sekali per tick saja supaya permintaan beruntun tidak saling rebut cache line.
+        if (terakhir != sekarang) {
+            sesi.aksesTerakhir = sekarang;
+        }
+        return sesi;
+    }
+    
+    public boolean akhiri(String token) {
+        Sesi sesi = token == null ? null : aktif.remove(token);
+        if (sesi == null) {
+            return false;
+        }
+        sesi.berakhir = true;
+        return true;
+    }
+    
+    // Dipanggil saat akun dihapus; jarang sehingga cukup menelusuri seluruh tabel.
+    public int akhiriPengguna(String username) {
+        int jumlah = 0;
+        for (Sesi sesi : aktif.values()) {
+            if (sesi.getUser().getUsername().equals(username) && akhiri(sesi.getToken())) {
+                jumlah++;
+            }
+        }
+        return jumlah;
+    }
+    
+    public int jumlahAktif() {
+        return aktif.size();
+    }
+    
+    // Memajukan roda sampai waktu sekarang; mengembalikan jumlah sesi yang kedaluwarsa.
+    synchronized int putar() {
+        long sekarang = tickSekarang();
+        int kedaluwarsa = 0;
+        while (tickDiproses <= sekarang) {
+            Sesi baru;
+            while ((baru = antreanBaru.poll()) != null) {
+                jadwalkan(baru, baru.aksesTerakhir + batasDiamTick);
+            }
+            int slot = (int) (tickDiproses & mask);
+            Sesi sesi = roda[slot];
+            roda[slot] = null;
+            while (sesi != null) {
+                Sesi lanjut = sesi.berikutnya;
+                sesi.berikutnya = null;
+                if (sesi.berakhir) {
+                    // sudah logout, cukup dilepas dari roda
+                } else if (sesi.putaran > 0) {
+                    sesi.putaran--;
+                    sesi.berikutnya = roda[slot];
+                    roda[slot] = sesi;
+                } else {
+                    long tenggat = sesi.aksesTerakhir + batasDiamTick;
+                    if (tenggat > tickDiproses) {
+                        jadwalkan(sesi, tenggat);
+                    } else if (aktif.remove(sesi.getToken(), sesi)) {
+                        sesi.berakhir = true;
+                        kedaluwarsa++;
+                    }
+                }
+                sesi = lanjut;
+            }
+            tickDiproses++;
+        }
+        return kedaluwarsa;
+    }
+    
+    private void jadwalkan(Sesi sesi, long tenggat) {
+        long selisih = Math.max(1, tenggat - tickDiproses);
+        int slot = (int) ((tickDiproses + selisih) & mask);
+        sesi.putaran = (selisih - 1) / roda.length;
+        sesi.berikutnya = roda[slot];
+        roda[slot] = sesi;
+    }
+    
+    private long tickSekarang() {
+        return (jam.millis() - mulaiMilis) / durasiTickMilis;
+    }
+    
+    private void jalankanPembersih() {
+        while (true) {
+            try {
+                Thread.sleep(durasiTickMilis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            putar();
+        }
+    }
+}
+
+// Buku poin loyalitas. Setiap pesanan pelanggan menjadi satu entri; entri dibalik saat pesanan
+// dibatalkan dan hangus per ember bulanan setelah MASA_BERLAKU_BULAN. Semua perubahan masuk
+// antrean dan diterapkan satu thread secara batch, sehingga jalur pemesanan hanya menaruh
+// pesanan ke antrean. Entri diturunkan dari pesanan, jadi saat pemulihan buku ini terisi
+// ulang dari pesanan yang dimuat dan saldo pelanggan ikut dihitung ulang. Saldo dari format
+// lama yang tidak bisa diturunkan dari pesanan masuk sebagai entri pembuka.
+final class BukuPoin {
+    static final int MASA_BERLAKU_BULAN = 12;
+    private static final int UKURAN_BATCH = 1024;
+    // Setelah dibangunkan, pekerja menunggu sebentar agar pesanan berikutnya ikut satu batch
+    // dan thread pemesanan tidak perlu membangunkannya untuk setiap pesanan.
+    private static final long JEDA_BATCH_NANO = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long JEDA_SEPI_NANO = TimeUnit.MINUTES.toNanos(1);
+    
+    private static final class Entri {
+        private final int poin;
+        private final int bulan;
+        private boolean dibalik;
+        
+        private Entri(int poin, int bulan) {
+            this.poin = poin;
+            this.bulan = bulan;
+        }
+    }
+    
+    private static final class Rekening {
+        private final Map<Long, Entri> perPesanan = new HashMap<>();
+        // Poin yang masih berlaku per bulan perolehan.
+        private final NavigableMap<Integer, Integer> perBulan = new TreeMap<>();
+        private int saldo;
+        private Entri pembuka;
+    }
+    
+    // Saldo total dari snapshot versi 1 atau rekaman POIN lama, atau pembuka yang sudah jadi dari
+    // snapshot baru. Diantrekan bersama pesanan supaya saldo total dibandingkan dengan entri dari
+    // pesanan yang dicatat sebelum saldo itu.
+    private static final class Pembuka {
+        private final String username;
+        private final int poin;
+        private final int bulan;
+        private final boolean saldoTotal;
+        
+        private Pembuka(String username, int poin, int bulan, boolean saldoTotal) {
+            this.username = username;
+            this.poin = poin;
+            this.bulan = bulan;
+            this.saldoTotal = saldoTotal;
+        }
+    }
+    
+    private final Function<String, User> cariPengguna;
+    private final Clock jam;
+    // Berisi Order atau Pembuka, diterapkan sesuai urutan masuk.
+    private final Queue<Object> antrean = new ConcurrentLinkedQueue<>();
+    private final AtomicLong diantrekan = new AtomicLong();
+    private final AtomicBoolean pekerjaJalan = new AtomicBoolean();
+    private final AtomicBoolean pekerjaTidur = new AtomicBoolean();
+    private volatile Thread pekerja;
+    private volatile boolean pekerjaMati;
+    private final Object kunciSelesai = new Object();
+    private volatile long diterapkan;
+    // Entri yang gagal diterapkan; dicoba lagi setiap batch sampai berhasil.
+    private final Set<Object> gagal = ConcurrentHashMap.newKeySet();
+    private volatile RuntimeException galatTerakhir;
+    // Hanya disentuh thread pekerja.
+    private final Map<String, Rekening> rekening = new HashMap<>();
+    private int batasBulan;
+    // Salinan entri pembuka {poin, bulan} untuk snapshot, karena tidak bisa diturunkan dari pesanan.
+    private final Map<String, int[]> daftarPembuka = new ConcurrentHashMap<>();
+    
+    BukuPoin(Function<String, User> cariPengguna, Clock jam) {
+        this.cariPengguna = cariPengguna;
+        this.jam = jam;
+        this.batasBulan = batasBulanSekarang();
+    }
+    
+    static int poinUntuk(Order order) {
+        return (int) (order.hitungTotalBayar() / 10000);
+    }
+    
+    // Dipanggil saat pesanan masuk atau statusnya berubah; tidak pernah memblokir.
+    void catat(Order order) {
+        masukkan(order);
+    }
+    
+    void catatSaldoLama(String username, int poin) {
+        masukkan(new Pembuka(username, poin, 0, true));
+    }
+    
+    void pulihkanPembuka(String username, int poin, int bulan) {
+        masukkan(new Pembuka(username, poin, bulan, false));
+    }
+    
+    // Pembuka hanya muncul saat pemulihan, jadi cukup menunggu antrean yang sudah masuk. Pesanan
+    // yang gagal tetap ikut snapshot dan dibukukan ulang saat dimuat, tetapi pembuka yang gagal
+    // tidak bisa diturunkan lagi, jadi snapshot dibatalkan.
+    Map<String, int[]> salinPembuka() {
+        tungguAntrean();
+        for (Object entri : gagal) {
+            if (entri instanceof Pembuka) {
+                throw new IllegalStateException("Saldo poin lama " + ((Pembuka) entri).username
+                        + " belum dibukukan: " + galatTerakhir.getMessage(), galatTerakhir);
+            }
+        }
+        return new HashMap<>(daftarPembuka);
+    }
+    
+    private void masukkan(Object entri) {
+        diantrekan.incrementAndGet();
+        antrean.add(entri);
+        if (!pekerjaJalan.get() && pekerjaJalan.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::jalankanPekerja, "buku-poin");
+            thread.setDaemon(true);
+            pekerja = thread;
+            thread.start();
+        } else if (pekerjaTidur.get() && pekerjaTidur.compareAndSet(true, false)) {
+            LockSupport.unpark(pekerja);
+        }
+    }
+    
+    // Menunggu sampai semua pesanan yang sudah dicatat tercermin di saldo pelanggan. Gagal jika
+    // masih ada entri yang belum bisa diterapkan, karena saldo yang terlihat belum benar.
+    public void tunggu() {
+        tungguAntrean();
+        int jumlahGagal = gagal.size();
+        if (jumlahGagal > 0) {
+            throw new IllegalStateException("Buku poin gagal membukukan " + jumlahGagal
+                    + " entri, poin mungkin belum terbaru: " + galatTerakhir.getMessage(), galatTerakhir);
+        }
+    }
+    
+    private void tungguAntrean() {
+        long target = diantrekan.get();
+        synchronized (kunciSelesai) {
+            while (diterapkan < target) {
+                if (pekerjaMati) {
+                    throw new IllegalStateException("Buku poin berhenti, poin mungkin belum terbaru.");
+                }
+                try {
+                    kunciSelesai.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void jalankanPekerja() {
+        try {
+            jalankanBatch();
+        } finally {
+            // Termasuk Error; penunggu dibangunkan supaya tidak menunggu selamanya.
+            synchronized (kunciSelesai) {
+                pekerjaMati = true;
+                kunciSelesai.notifyAll();
+            }
+        }
+    }
+    
+    private void jalankanBatch() {
+        List<Object> batch = new ArrayList<>(UKURAN_BATCH);
+        Set<String> berubah = new HashSet<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (antrean.isEmpty()) {
+                pekerjaTidur.set(true);
+                if (antrean.isEmpty()) {
+                    // Sesekali bangun walau sepi supaya poin tetap hangus tepat waktu.
+                    LockSupport.parkNanos(this, JEDA_SEPI_NANO);
+                    LockSupport.parkNanos(this, JEDA_BATCH_NANO);
+                }
+                pekerjaTidur.set(false);
+            }
+            Object masuk;
+            while (batch.size() < UKURAN_BATCH && (masuk = antrean.poll()) != null) {
+                batch.add(masuk);
+            }
+            int batasBaru = batasBulanSekarang();
+            if (batasBaru > batasBulan) {
+                hanguskan(batasBaru, berubah);
+            }
+            // Penerapan menyamakan entri dengan keadaan pesanan saat ini, jadi mengulang aman.
+            gagal.removeIf(entri -> terapkanEntri(entri, berubah));
+            for (Object entri : batch) {
+                if (!terapkanEntri(entri, berubah)) {
+                    gagal.add(entri);
+                }
+            }
+            // Saldo dan level tiap pelanggan cukup diperbarui sekali per batch.
+            for (String username : berubah) {
+                User user = cariPengguna.apply(username);
+                if (user instanceof Pelanggan) {
+                    ((Pelanggan) user).pulihkanPoin(rekening.get(username).saldo);
+                }
+            }
+            berubah.clear();
+            if (!batch.isEmpty()) {
+                diterapkan += batch.size();
+                batch.clear();
+                synchronized (kunciSelesai) {
+                    kunciSelesai.notifyAll();
+                }
+            }
+        }
+    }
+    
+    // Satu entri yang gagal (misalnya total pesanan overflow) tidak boleh menghentikan buku;
+    // galatnya disimpan untuk dilaporkan lewat tunggu().
+    private boolean terapkanEntri(Object entri, Set<String> berubah) {
+        try {
+            if (entri instanceof Order) {
+                terapkan((Order) entri, berubah);
+            } else {
+                terapkanPembuka((Pembuka) entri, berubah);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            galatTerakhir = e;
+            return false;
+        }
+    }
+    
+    // Menyamakan entri dengan keadaan pesanan saat ini, jadi aman dicatat berulang kali.
+    private void terapkan(Order order, Set<String> berubah) {
+        String username = order.getKunciPelanggan();
+        boolean batal = order.getStatusPesanan() == StatusPesanan.DIBATALKAN;
+        Rekening r = rekening.get(username);
+        Entri entri = r == null ? null : r.perPesanan.get(order.getNomorId());
+        if (entri == null) {
+            int poin = poinUntuk(order);
+            if (poin == 0 || !(cariPengguna.apply(username) instanceof Pelanggan)) {
+                return;
+            }
+            if (r == null) {
+                r = new Rekening();
+                rekening.put(username, r);
+            }
+            LocalDateTime waktu = order.getWaktuPesan();
+            entri = new Entri(poin, waktu.getYear() * 12 + waktu.getMonthValue() - 1);
+            r.perPesanan.put(order.getNomorId(), entri);
+            entri.dibalik = batal;
+            if (!batal) {
+                ubahSaldo(r, entri, 1);
+            }
+        } else if (entri.dibalik != batal) {
+            entri.dibalik = batal;
+            ubahSaldo(r, entri, batal ? -1 : 1);
+        } else {
+            return;
+        }
+        berubah.add(username);
+    }
+    
+    // Untuk saldo total, selisihnya dengan entri pesanan yang sudah tercatat (termasuk yang sudah
+    // hangus) menjadi pembuka; bulan perolehannya tidak diketahui, jadi dianggap bulan pemulihan.
+    // Pembuka berikutnya untuk pelanggan yang sama menggantikan yang sebelumnya.
+    private void terapkanPembuka(Pembuka pembuka, Set<String> berubah) {
+        if (!(cariPengguna.apply(pembuka.username) instanceof Pelanggan)) {
+            return;
+        }
+        Rekening r = rekening.computeIfAbsent(pembuka.username, username -> new Rekening());
+        int poin = pembuka.poin;
+        int bulan = pembuka.bulan;
+        if (pembuka.saldoTotal) {
+            for (Entri entri : r.perPesanan.values()) {
+                if (!entri.dibalik) {
+                    poin -= entri.poin;
+                }
+            }
+            bulan = batasBulan + MASA_BERLAKU_BULAN - 1;
+        }
+        if (r.pembuka != null) {
+            ubahSaldo(r, r.pembuka, -1);
+        }
+        r.pembuka = poin > 0 ? new Entri(poin, bulan) : null;
+        if (r.pembuka != null) {
+            ubahSaldo(r, r.pembuka, 1);
+            daftarPembuka.put(pembuka.username, new int[] {poin, bulan});
+        } else {
+            daftarPembuka.remove(pembuka.username);
+        }
+        berubah.add(pembuka.username);
+    }
+    
+    private void ubahSaldo(Rekening r, Entri entri, int arah) {
+        // Entri dari bulan yang sudah hangus tidak lagi memengaruhi saldo.
+        if (entri.bulan < batasBulan) {
+            return;
+        }
+        int poin = arah * entri.poin;
+        r.saldo += poin;
+        if (r.perBulan.merge(entri.bulan, poin, Integer::sum) == 0) {
+            r.perBulan.remove(entri.bulan);
+        }
+    }
+    
+    private void hanguskan(int batasBaru, Set<String> berubah) {
+        for (Map.Entry<String, Rekening> e : rekening.entrySet()) {
+            Map<Integer, Integer> hangus = e.getValue().perBulan.headMap(batasBaru, false);
+            if (hangus.isEmpty()) {
+                continue;
+            }
+            for (int poin : hangus.values()) {
+                e.getValue().saldo -= poin;
+            }
+            hangus.clear();
+            berubah.add(e.getKey());
+        }
+        batasBulan = batasBaru;
+    }
+    
+    // Bulan perolehan paling awal yang poinnya masih berlaku.
+    private int batasBulanSekarang() {
+        LocalDate hariIni = LocalDate.now(jam);
+        return hariIni.getYear() * 12 + hariIni.getMonthValue() - 1 - MASA_BERLAKU_BULAN + 1;
+    }
+}
+
+// Satu aturan promo sebelum dikompilasi. Aturan persen berlaku untuk semua menu, satu
+// kategori, atau satu menu, dan bisa dibatasi jendela jam (happy hour). Bundel memberi
+// potongan tetap untuk setiap paket lengkap dalam satu pesanan.
+final class Promo {
+    enum Jenis { LEVEL, PERSEN, BUNDEL }
+    
+    static final int MENIT_SEHARI = 24 * 60;
+    
+    final Jenis jenis;
+    final int tingkat;
+    final String kategori;
+    final long idMenu;
+    final int persen;
+    final int menitMulai;
+    final int menitSelesai;
+    final long potongan;
+    final long[] idBundel;
+    final int[] jumlahBundel;
+    
+    private Promo(Jenis jenis, int tingkat, String kategori, long idMenu, int persen, int menitMulai,
+            int menitSelesai, long potongan, long[] idBundel, int[] jumlahBundel) {
+        if (persen < 0 || persen > 100) {
+            throw new IllegalArgumentException("Persen promo harus antara 0 dan 100!");
+        }
+        this.jenis = jenis;
+        this.tingkat = tingkat;
+        this.kategori = kategori;
+        this.idMenu = idMenu;
+        this.persen = persen;
+        this.menitMulai = menitMulai;
+        this.menitSelesai = menitSelesai;
+        this.potongan = potongan;
+        this.idBundel = idBundel;
+        this.jumlahBundel = jumlahBundel;
+    }
+    
+    // Menimpa diskon bawaan level pelanggan (Pelanggan.DISKON_LEVEL).
+    static Promo level(String level, int persen) {
+        int tingkat = Arrays.asList(Pelanggan.LEVEL).indexOf(level);
+        if (tingkat < 0) {
+            throw new IllegalArgumentException("Level tidak dikenal: " + level);
+        }
+        return new Promo(Jenis.LEVEL, tingkat, null, IdGenerator.ID_TIDAK_VALID, persen, 0, MENIT_SEHARI, 0, null, null);
+    }
+    
+    static Promo kategori(String kategori, int persen) {
+        return jamBahagia(LocalTime.MIDNIGHT, LocalTime.MIDNIGHT, kategori, persen);
+    }
+    
+    static Promo menu(long idMenu, int persen) {
+        return new Promo(Jenis.PERSEN, -1, null, idMenu, persen, 0, MENIT_SEHARI, 0, null, null);
+    }
+    
+    // Kategori null berarti semua menu; mulai sama dengan selesai berarti sepanjang hari, dan
+    // selesai lebih awal dari mulai berarti melewati tengah malam.
+    static Promo jamBahagia(LocalTime mulai, LocalTime selesai, String kategori, int persen) {
+        int menitMulai = mulai.getHour() * 60 + mulai.getMinute();
+        int menitSelesai = selesai.getHour() * 60 + selesai.getMinute();
+        if (menitMulai == menitSelesai) {
+            menitMulai = 0;
+            menitSelesai = MENIT_SEHARI;
+        }
+        return new Promo(Jenis.PERSEN, -1, kategori, IdGenerator.ID_TIDAK_VALID, persen, menitMulai, menitSelesai, 0, null, null);
+    }
+    
+    static Promo bundel(long potongan, long[] idMenu, int[] jumlah) {
+        if (potongan <= 0) {
+            throw new IllegalArgumentException("Potongan bundel harus lebih dari 0!");
+        }
+        if (idMenu.length == 0 || idMenu.length != jumlah.length) {
+            throw new IllegalArgumentException("Isi bundel tidak valid!");
+        }
+        for (int j : jumlah) {
+            if (j <= 0) {
+                throw new IllegalArgumentException("Jumlah item bundel harus lebih dari 0!");
+            }
+        }
+        return new Promo(Jenis.BUNDEL, -1, null, IdGenerator.ID_TIDAK_VALID, 0, 0, MENIT_SEHARI, potongan,
+                idMenu.clone(), jumlah.clone());
+    }
+    
+    boolean aktifPada(int menit) {
+        return menitMulai < menitSelesai
+                ? menit >= menitMulai && menit < menitSelesai
+                : menit >= menitMulai || menit < menitSelesai;
+    }
+    
+    boolean berlakuUntuk(String kategoriMenu, long idMenuSasaran) {
+        if (idMenu != IdGenerator.ID_TIDAK_VALID) {
+            return idMenu == idMenuSasaran;
+        }
+        return kategori == null || kategori.equalsIgnoreCase(kategoriMenu);
+    }
+    
+    // Satu aturan per baris, '#' untuk komentar:
+    //   level <Bronze|Silver|Gold|Platinum> <persen>
+    //   kategori <nama> <persen>
+    //   menu <idMenu> <persen>
+    //   jam <HH:mm>-<HH:mm> <kategori|*> <persen>
+    //   bundel <potongan> <idMenu>[x<jumlah>] <idMenu>[x<jumlah>] ...
+    static List<Promo> baca(Path berkas) throws IOException {
+        List<Promo> hasil = new ArrayList<>();
+        List<String> baris = Files.readAllLines(berkas, StandardCharsets.UTF_8);
+        for (int i = 0; i < baris.size(); i++) {
+            String teks = baris.get(i).trim();
+            if (teks.isEmpty() || teks.startsWith("#")) {
+                continue;
+            }
+            try {
+                hasil.add(uraikan(teks.split("\\s+")));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Berkas promo baris " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return hasil;
+    }
+    
+    private static Promo uraikan(String[] t) {
+        switch (t[0]) {
+            case "level":
+                wajibPanjang(t, 3);
+                return level(t[1], Integer.parseInt(t[2]));
+            case "kategori":
+                wajibPanjang(t, 3);
+                return kategori(t[1], Integer.parseInt(t[2]));
+            case "menu":
+                wajibPanjang(t, 3);
+                return menu(idMenu(t[1]), Integer.parseInt(t[2]));
+            case "jam": {
+                wajibPanjang(t, 4);
+                String[] rentang = t[1].split("-");
+                if (rentang.length != 2) {
+                    throw new IllegalArgumentException("Rentang jam harus HH:mm-HH:mm");
+                }
+                return jamBahagia(LocalTime.parse(rentang[0]), LocalTime.parse(rentang[1]),
+                        t[2].equals("*") ? null : t[2], Integer.parseInt(t[3]));
+            }
+            case "bundel": {
+                if (t.length < 3) {
+                    throw new IllegalArgumentException("Bundel membutuhkan potongan dan minimal satu menu");
+                }
+                long[] id = new long[t.length - 2];
+                int[] jumlah = new int[t.length - 2];
+                for (int i = 2; i < t.length; i++) {
+                    int x = t[i].indexOf('x');
+                    id[i - 2] = idMenu(x < 0 ? t[i] : t[i].substring(0, x));
+                    jumlah[i - 2] = x < 0 ? 1 : Integer.parseInt(t[i].substring(x + 1));
+                }
+                return bundel(Rupiah.parse(t[1]), id, jumlah);
+            }
+            default:
+                throw new IllegalArgumentException("Jenis aturan tidak dikenal: " + t[0]);
+        }
+    }
+    
+    private static void wajibPanjang(String[] t, int panjang) {
+        if (t.length != panjang) {
+            throw new IllegalArgumentException("Aturan " + t[0] + " membutuhkan " + (panjang - 1) + " nilai");
+        }
+    }
+    
+    private static long idMenu(String teks) {
+        long id = IdGenerator.parse(teks);
+        if (id == IdGenerator.ID_TIDAK_VALID) {
+            throw new IllegalArgumentException("ID menu tidak valid: " + teks);
+        }
+        return id;
+    }
+}
+
+// Promo aktif yang sudah dikompilasi. Hari dibagi menjadi fase di setiap batas jendela jam, lalu
+// untuk tiap sasaran (menu yang punya promo sendiri, kategori, atau menu lain) dihitung satu
+// tabel persen [fase x tingkat] yang sudah menggabungkan diskon level dan promo terbaik.
+// Checkout cukup satu kali lookup per baris tanpa menelusuri aturan.
+final class TabelHarga {
+    // Tingkat 0 untuk pemesan bukan pelanggan, 1.. untuk Pelanggan.LEVEL.
+    static final int JUMLAH_TINGKAT = Pelanggan.LEVEL.length + 1;
+    private static final int MAKS_FASE = 256;
+    
+    private final long versiKatalog;
+    private final byte[] faseMenit = new byte[Promo.MENIT_SEHARI];
+    private final int[] persenLevel;
+    private final Map<Long, byte[]> perMenu = new HashMap<>();
+    // Kategori menu dicocokkan tanpa membedakan huruf besar, sama seperti MenuItem.
+    private final Map<String, byte[]> perKategori = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final byte[] umum;
+    // Bundel terurut dari potongan terbesar; anggota bundel dipetakan ke indeks rapat.
+    private final Promo[] bundel;
+    private final int[][] anggotaBundel;
+    private final Map<Long, Integer> indeksAnggota = new HashMap<>();
+    
+    private TabelHarga(List<Promo> daftar, LongFunction<MenuItem> cariMenu, long versiKatalog) {
+        this.versiKatalog = versiKatalog;
+        persenLevel = new int[JUMLAH_TINGKAT];
+        for (int i = 1; i < JUMLAH_TINGKAT; i++) {
+            persenLevel[i] = Pelanggan.DISKON_LEVEL[i - 1];
+        }
+        List<Promo> persen = new ArrayList<>();
+        List<Promo> daftarBundel = new ArrayList<>();
+        TreeSet<Integer> batas = new TreeSet<>();
+        batas.add(0);
+        for (Promo promo : daftar) {
+            switch (promo.jenis) {
+                case LEVEL:
+                    persenLevel[promo.tingkat + 1] = promo.persen;
+                    break;
+                case PERSEN:
+                    persen.add(promo);
+                    batas.add(promo.menitMulai % Promo.MENIT_SEHARI);
+                    batas.add(promo.menitSelesai % Promo.MENIT_SEHARI);
+                    break;
+                case BUNDEL:
+                    daftarBundel.add(promo);
+                    break;
+            }
+        }
+        if (batas.size() > MAKS_FASE) {
+            throw new IllegalArgumentException("Terlalu banyak jendela jam promo!");
+        }
+        int[] awalFase = new int[batas.size()];
+        int f = 0;
+        for (int menit : batas) {
+            awalFase[f++] = menit;
+        }
+        for (int menit = 0, fase = 0; menit < Promo.MENIT_SEHARI; menit++) {
+            if (fase + 1 < awalFase.length && awalFase[fase + 1] == menit) {
+                fase++;
+            }
+            faseMenit[menit] = (byte) fase;
+        }
+        
+        umum = susun(persen, awalFase, null, IdGenerator.ID_TIDAK_VALID);
+        for (Promo promo : persen) {
+            if (promo.kategori != null && !perKategori.containsKey(promo.kategori)) {
+                perKategori.put(promo.kategori, susun(persen, awalFase, promo.kategori, IdGenerator.ID_TIDAK_VALID));
+            }
+        }
+        for (Promo promo : persen) {
+            if (promo.idMenu != IdGenerator.ID_TIDAK_VALID && !perMenu.containsKey(promo.idMenu)) {
+                MenuItem item = cariMenu.apply(promo.idMenu);
+                perMenu.put(promo.idMenu, susun(persen, awalFase, item == null ? null : item.getKategori(), promo.idMenu));
+            }
+        }
+        
+        daftarBundel.sort((a, b) -> Long.compare(b.potongan, a.potongan));
+        bundel = daftarBundel.toArray(new Promo[0]);
+        anggotaBundel = new int[bundel.length][];
+        for (int b = 0; b < bundel.length; b++) {
+            anggotaBundel[b] = new int[bundel[b].idBundel.length];
+            for (int i = 0; i < bundel[b].idBundel.length; i++) {
+                Integer indeks = indeksAnggota.get(bundel[b].idBundel[i]);
+                if (indeks == null) {
+                    indeks = indeksAnggota.size();
+                    indeksAnggota.put(bundel[b].idBundel[i], indeks);
+                }
+                anggotaBundel[b][i] = indeks;
+            }
+        }
+    }
+    
+    static TabelHarga kompilasi(List<Promo> daftar, LongFunction<MenuItem> cariMenu, long versiKatalog) {
+        return new TabelHarga(daftar, cariMenu, versiKatalog);
+    }
+    
+    long getVersiKatalog() { return versiKatalog; }
+    
+    private byte[] susun(List<Promo> persen, int[] awalFase, String kategori, long idMenu) {
+        byte[] tabel = new byte[awalFase.length * JUMLAH_TINGKAT];
+        for (int fase = 0; fase < awalFase.length; fase++) {
+            int terbaik = 0;
+            for (Promo promo : persen) {
+                if (promo.berlakuUntuk(kategori, idMenu) && promo.aktifPada(awalFase[fase])) {
+                    terbaik = Math.max(terbaik, promo.persen);
+                }
+            }
+            for (int tingkat = 0; tingkat < JUMLAH_TINGKAT; tingkat++) {
+                tabel[fase * JUMLAH_TINGKAT + tingkat] = (byte) Math.min(100, persenLevel[tingkat] + terbaik);
+            }
+        }
+        return tabel;
+    }
+    
+    static int tingkatDari(User pemesan) {
+        return pemesan instanceof Pelanggan ? ((Pelanggan) pemesan).getTingkat() + 1 : 0;
+    }
+    
+    public int persenLevel(User pemesan) {
+        return persenLevel[tingkatDari(pemesan)];
+    }
+    
+    // Potongan persen dijumlahkan per baris, lalu potongan bundel ditambahkan untuk setiap paket
+    // lengkap; totalnya tidak pernah melebihi total pesanan.
+    public long hitungPotongan(Order order, User pemesan, LocalTime waktu) {
+        Kasir kasir = new Kasir(this, (faseMenit[waktu.getHour() * 60 + waktu.getMinute()] & 0xFF) * JUMLAH_TINGKAT
+                + tingkatDari(pemesan));
+        order.untukSetiapBaris(kasir);
+        long potongan = kasir.potongan;
+        if (kasir.jumlahAnggota != null) {
+            potongan = Rupiah.tambah(potongan, potonganBundel(kasir.jumlahAnggota));
+        }
+        return Math.min(potongan, order.hitungTotal());
+    }
+    
+    private long potonganBundel(int[] tersedia) {
+        long potongan = 0;
+        for (int b = 0; b < bundel.length; b++) {
+            int[] anggota = anggotaBundel[b];
+            int paket = Integer.MAX_VALUE;
+            for (int i = 0; i < anggota.length; i++) {
+                paket = Math.min(paket, tersedia[anggota[i]] / bundel[b].jumlahBundel[i]);
+            }
+            if (paket == 0) {
+                continue;
+            }
+            // Unit yang sudah masuk satu paket tidak dipakai bundel lain.
+            for (int i = 0; i < anggota.length; i++) {
+                tersedia[anggota[i]] -= paket * bundel[b].jumlahBundel[i];
+            }
+            potongan = Rupiah.tambah(potongan, Rupiah.kali(bundel[b].potongan, paket));
+        }
+        return potongan;
+    }
+    
+    private static final class Kasir implements Order.PengunjungBaris {
+        private final TabelHarga tabel;
+        private final int kolom;
+        private final int[] jumlahAnggota;
+        private long potongan;
+        
+        private Kasir(TabelHarga tabel, int kolom) {
+            this.tabel = tabel;
+            this.kolom = kolom;
+            this.jumlahAnggota = tabel.bundel.length == 0 ? null : new int[tabel.indeksAnggota.size()];
+        }
+        
+        @Override
+        public void kunjungi(MenuItem menu, int jumlah, long harga) {
+            byte[] sel = tabel.perMenu.isEmpty() ? null : tabel.perMenu.get(menu.getNomorId());
+            if (sel == null) {
+                sel = tabel.perKategori.get(menu.getKategori());
+                if (sel == null) {
+                    sel = tabel.umum;
+                }
+            }
+            int persen = sel[kolom];
+            if (persen > 0) {
+                potongan = Rupiah.tambah(potongan, Rupiah.persen(Rupiah.kali(harga, jumlah), persen));
+            }
+            if (jumlahAnggota != null) {
+                Integer indeks = tabel.indeksAnggota.get(menu.getNomorId());
+                if (indeks != null) {
+                    jumlahAnggota[indeks] += jumlah;
+                }
+            }
+        }
+    }
+}
+
+class DomainStore {
+    static final CompletableFuture<Void> SUDAH_DURABEL = CompletableFuture.completedFuture(null);
+    private final MenuCatalog katalog = new MenuCatalog();
+    private final OrderStore pesanan = new OrderStore();
+    // Terurut menurut username supaya daftar pengguna bisa dipaging dengan kursor.
+    private final ConcurrentNavigableMap<String, User> pengguna = new ConcurrentSkipListMap<>();
+    private volatile PendengarDomain pendengar;
+    private volatile KatalogTerpeta katalogBersama;
+    private final LaporanPenjualan laporan = new LaporanPenjualan();
+    // Separuh core untuk hashing password, sisanya tetap untuk melayani pesanan.
+    private final VerifikatorKredensial verifikator = new VerifikatorKredensial(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 256);
+    private final ManajerSesi sesi = new ManajerSesi();
+    private final BukuPoin bukuPoin = new BukuPoin(this::cariPengguna, Clock.systemDefaultZone());
+    private volatile List<Promo> promo = Collections.emptyList();
+    private volatile TabelHarga tabelHarga;
+    
+    public DomainStore() {
+        katalog.setPendengarPerubahan(item -> {
+            PendengarDomain p = pendengar;
+            if (p != null) {
+                p.menuDisimpan(item);
+            }
+        });
+        // Termasuk pesanan dari snapshot dan replay log, sehingga rollup laporan dan buku poin
+        // terbangun ulang sendiri.
+        pesanan.setPendengarTambah(order -> {
+            laporan.statusDiubah(order);
+            bukuPoin.catat(order);
+        });
+        pesanan.setPendengarStatus(order -> {
+            laporan.statusDiubah(order);
+            bukuPoin.catat(order);
+            PendengarDomain p = pendengar;
+            if (p != null) {
+                p.statusDiubah(order);
+            }
+        });
+    }
+    
+    public void setPendengar(PendengarDomain pendengar) { this.pendengar = pendengar; }
+    
+    public KatalogTerpeta getKatalogBersama() { return katalogBersama; }
+    
+    public void setKatalogBersama(KatalogTerpeta katalogBersama) { this.katalogBersama = katalogBersama; }
+    
+    // Dengan katalog bersama, menu baru dijadikan objek dan disimpan di katalog lokal saat pertama dipesan.
+    public MenuItem cariMenu(long id) {
+        MenuItem item = katalog.cari(id);
+        if (item != null || katalogBersama == null) {
+            return item;
+        }
+        return muatDariKatalogBersama(id);
+    }
+    
+    public MenuItem cariMenu(String id) {
+        return cariMenu(IdGenerator.parse(id));
+    }
+    
+    private synchronized MenuItem muatDariKatalogBersama(long id) {
+        MenuItem item = katalog.cari(id);
+        if (item != null) {
+            return item;
+        }
+        int indeks = katalogBersama.cari(id);
+        if (indeks < 0) {
+            return null;
+        }
+        item = katalogBersama.buatMenuItem(indeks);
+        tambahMenu(item);
+        return item;
+    }
+    
+    public MenuCatalog getKatalog() { return katalog; }
+    
+    public OrderStore getPesanan() { return pesanan; }
+    
+    public LaporanPenjualan getLaporan() { return laporan; }
+    
+    // Batas blok ID dicatat sebagai ID terbesar, jadi ikut ke snapshot dan log. Setelah restart
+    // penomoran melompati seluruh blok, termasuk ID yang sudah terlihat di luar tetapi belum disimpan
+    // (misalnya draf pesanan POS). Rekaman blok selalu mendahului rekaman entitas yang memakai ID-nya.
+    public void cadangkanBlokMenu(long batas) {
+        katalog.catatIdTerbesar(batas - 1);
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.blokMenuDicadangkan(batas);
+        }
+    }
+    
+    public void cadangkanBlokPesanan(long batas) {
+        pesanan.catatIdTerbesar(batas - 1);
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.blokPesananDicadangkan(batas);
+        }
+    }
+    
+    public void tambahMenu(MenuItem item) {
+        katalog.tambah(item);
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.menuDisimpan(item);
+        }
+    }
+    
+    public boolean hapusMenu(MenuItem item) {
+        if (!katalog.hapus(item)) {
+            return false;
+        }
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.menuDihapus(item);
+        }
+        return true;
+    }
+    
+    public boolean daftarkanPengguna(User user) {
+        if (pengguna.putIfAbsent(user.getUsername(), user) != null) {
+            return false;
+        }
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.penggunaDisimpan(user);
+        }
+        return true;
+    }
+    
+    public synchronized void setPromo(List<Promo> promo) {
+        List<Promo> salinan = Collections.unmodifiableList(new ArrayList<>(promo));
+        TabelHarga tabel = TabelHarga.kompilasi(salinan, katalog::cari, katalog.getVersi());
+        this.promo = salinan;
+        this.tabelHarga = tabel;
+    }
+    
+    // Dikompilasi ulang jika katalog berubah, karena promo per menu memakai kategori menunya.
+    public TabelHarga getTabelHarga() {
+        TabelHarga tabel = tabelHarga;
+        if (tabel != null && tabel.getVersiKatalog() == katalog.getVersi()) {
+            return tabel;
+        }
+        return kompilasiUlangTabelHarga();
+    }
+    
+    // Dikunci bersama setPromo agar kompilasi ulang tidak menimpa promo yang baru dipasang.
+    private synchronized TabelHarga kompilasiUlangTabelHarga() {
+        long versi = katalog.getVersi();
+        if (tabelHarga == null || tabelHarga.getVersiKatalog() != versi) {
+            tabelHarga = TabelHarga.kompilasi(promo, katalog::cari, versi);
+        }
+        return tabelHarga;
+    }
+    
+    // Dipakai saat memulihkan format lama yang menyimpan saldo poin, bukan hanya pesanan.
+    void pulihkanSaldoPoinLama(String username, int poin) {
+        bukuPoin.catatSaldoLama(username, poin);
+    }
+    
+    void pulihkanPembukaPoin(String username, int poin, int bulan) {
+        bukuPoin.pulihkanPembuka(username, poin, bulan);
+    }
+    
+    public BukuPoin getBukuPoin() {
+        return bukuPoin;
+    }
+    
+    public ManajerSesi getSesi() {
+        return sesi;
+    }
+    
+    public User cariPengguna(String username) {
+        return username == null ? null : pengguna.get(username);
+    }
+    
+    public boolean penggunaTerdaftar(String username) {
+        return cariPengguna(username) != null;
+    }
+    
+    public User hapusPengguna(String username) {
+        User user = pengguna.remove(username);
+        if (user == null) {
+            return null;
+        }
+        sesi.akhiriPengguna(username);
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.penggunaDihapus(user);
+        }
+        return user;
+    }
+    
+    public Collection<User> semuaPengguna() {
+        return new ArrayList<>(pengguna.values());
+    }
+    
+    // Paling banyak batas pengguna dengan username sesudah kursor (null berarti dari awal).
+    public List<User> penggunaSetelah(String kursor, int batas) {
+        Map<String, User> sisa = kursor == null ? pengguna : pengguna.tailMap(kursor, false);
+        List<User> hasil = new ArrayList<>(batas);
+        for (User user : sisa.values()) {
+            if (hasil.size() == batas) {
+                break;
+            }
+            hasil.add(user);
+        }
+        return hasil;
+    }
+    
+    // Memblokir pemanggil sampai verifikasi selesai; melempar IllegalStateException jika
+    // pool verifikator sedang penuh.
+    public User login(String username, String password) {
+        return tungguHasil(loginAsync(username, password));
+    }
+    
+    // Hash password baru dihitung di pool verifikator, dibatasi bersama login.
+    CompletableFuture<Kredensial> buatKredensialAsync(String password) {
+        return verifikator.buat(password);
+    }
+    
+    Kredensial buatKredensial(String password) {
+        return tungguHasil(buatKredensialAsync(password));
+    }
+    
+    private static <T> T tungguHasil(CompletableFuture<T> hasil) {
+        try {
+            return hasil.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    // Hasil null berarti username atau password salah. Password teks biasa dari versi lama
+    // di-hash ulang dan dicatat ke log begitu login pertama berhasil.
+    public CompletableFuture<User> loginAsync(String username, String password) {
+        if (password == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        User user = cariPengguna(username);
+        Kredensial lama = user == null ? null : user.getKredensial();
+        return verifikator.verifikasi(lama, password).thenCompose(hasil -> {
+            if (hasil == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (hasil != lama && user.gantiKredensial(lama, hasil)) {
+                PendengarDomain p = pendengar;
+                if (p != null) {
+                    // Dicatat di thread verifikator; login baru selesai setelah hash barunya durabel.
+                    p.kredensialDiubah(user);
+                    return p.sinkronAsync().thenApply(selesai -> user);
+                }
+            }
+            return CompletableFuture.completedFuture(user);
+        });
+    }
+    
+    // Password teks biasa dari versi lama di-hash di satu thread latar berprioritas rendah, supaya
+    // pengguna yang tidak pernah login lagi pun tidak tersimpan sebagai teks biasa di snapshot
+    // berikutnya. Satu thread saja agar hashing tidak merebut CPU dari layanan pesanan.
+    public void hashUlangKredensialLama() {
+        List<User> lama = new ArrayList<>();
+        for (User user : pengguna.values()) {
+            if (user.getKredensial().isTeksBiasa()) {
+                lama.add(user);
+            }
+        }
+        if (lama.isEmpty()) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            for (User user : lama) {
+                Kredensial kredensial = user.getKredensial();
+                if (!kredensial.isTeksBiasa()) {
+                    continue;
+                }
+                // Gagal jika sementara itu login sudah menggantinya; hasil login yang dipakai.
+                if (user.gantiKredensial(kredensial, Kredensial.buat(kredensial.tersimpan()))) {
+                    PendengarDomain p = pendengar;
+                    if (p != null) {
+                        p.kredensialDiubah(user);
+                    }
+                }
+            }
+        }, "hash-ulang-kredensial");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+    
+    // Menghitung potongan promo lalu menyimpan pesanan; poin pelanggan dibukukan di belakang
+    // oleh BukuPoin. Mengembalikan poin yang akan diperoleh.
+    public int simpanPesanan(Order order, User pemesan) {
+        if (order.getJumlahBaris() == 0) {
+            throw new IllegalArgumentException("Pesanan kosong! Tambahkan item terlebih dahulu.");
+        }
+        order.setPotongan(getTabelHarga().hitungPotongan(order, pemesan, order.getWaktuPesan().toLocalTime()));
+        // Kunci pesanan dipegang sampai rekamannya tertulis. Thread lain bisa menemukan pesanan ini
+        // begitu masuk OrderStore, tetapi setStatus-nya menunggu di sini, sehingga rekaman status
+        // tidak pernah mendahului rekaman pesanannya di log.
+        synchronized (order) {
+            pesanan.tambah(order);
+            PendengarDomain p = pendengar;
+            if (p != null) {
+                p.pesananDisimpan(order);
+            }
+        }
+        return pemesan instanceof Pelanggan ? BukuPoin.poinUntuk(order) : 0;
+    }
+    
+    // Perubahan hanya dicatat; pemanggil menunggu di sini sebelum memberi konfirmasi ke pengguna.
+    public void sinkron() {
+        PendengarDomain p = pendengar;
+        if (p != null) {
+            p.sinkron();
+        }
+    }
+    
+    // Untuk thread yang tidak boleh diam menunggu disk, misalnya selector POS.
+    public CompletableFuture<Void> sinkronAsync() {
+        PendengarDomain p = pendengar;
+        return p != null ? p.sinkronAsync() : SUDAH_DURABEL;
+    }
+}
+
+class HttpApi {
+    private static final int HALAMAN_BAWAAN = 20;
+    private static final int MAKS_HALAMAN = 100;
+    
+    private final DomainStore store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    public HttpApi(DomainStore store, int port) throws IOException {
+        this.store = store;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = buatExecutor();
+        server.setExecutor(executor);
+        server.createContext("/login", tukar -> tangani(tukar, this::login));
+        server.createContext("/logout", tukar -> tangani(tukar, this::logout));
+        server.createContext("/menu", tukar -> tangani(tukar, this::menu));
+        server.createContext("/pesanan", tukar -> tangani(tukar, this::pesanan));
+    }
+    
+    public void mulai() {
+        server.start();
+    }
+    
+    public void berhenti() {
+        server.stop(1);
+        executor.shutdown();
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    // Thread virtual (JDK 21+) dipakai jika tersedia; pada JDK lama jatuh ke pool berukuran tetap.
+    private static ExecutorService buatExecutor() {
+        try {
+            Method pabrik = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) pabrik.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 8));
+        }
+    }
+    
+    private interface Penangan {
+        String proses(HttpExchange tukar) throws IOException;
+    }
+    
+    private static class HttpGagal extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int kode;
+        
+        HttpGagal(int kode, String pesan) {
+            super(pesan);
+            this.kode = kode;
+        }
+    }
+    
+    private void tangani(HttpExchange tukar, Penangan penangan) throws IOException {
+        int kode = 200;
+        String isi;
+        try {
+            isi = penangan.proses(tukar);
+            store.sinkron();
+        } catch (HttpGagal e) {
+            kode = e.kode;
+            isi = galat(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            kode = 400;
+            isi = galat(e.getMessage());
+        } catch (RuntimeException e) {
+            // Misalnya overflow total atau kegagalan log; penangan lain tetap berjalan.
+            kode = 500;
+            isi = galat("Terjadi kesalahan internal server!");
+        }
+        byte[] data = isi.getBytes(StandardCharsets.UTF_8);
+        tukar.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        tukar.sendResponseHeaders(kode, data.length);
+        try (OutputStream keluaran = tukar.getResponseBody()) {
+            keluaran.write(data);
+        }
+    }
+    
+    private String login(HttpExchange tukar) throws IOException {
+        wajibMetode(tukar, "POST");
+        Map<String, String> form = bacaForm(tukar);
+        User user;
+        try {
+            user = store.login(form.get("username"), form.get("password"));
+        } catch (IllegalStateException e) {
+            throw new HttpGagal(503, e.getMessage());
+        }
+        if (user == null) {
+            throw new HttpGagal(401, "Username atau password salah!");
+        }
+        Sesi sesi = store.getSesi().buat(user);
+        return "{\"token\":" + teks(sesi.getToken()) + ",\"role\":" + teks(user.getRole())
+                + ",\"nama\":" + teks(user.getNama()) + "}";
+    }
+    
+    private String logout(HttpExchange tukar) {
+        wajibMetode(tukar, "POST");
+        store.getSesi().akhiri(sesiDari(tukar).getToken());
+        return "{\"logout\":true}";
+    }
+    
+    private String menu(HttpExchange tukar) {
+        wajibMetode(tukar, "GET");
+        StringBuilder sb = new StringBuilder("[");
+        for (MenuItem item : store.getKatalog()) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(teks(item.getId()))
+                    .append(",\"nama\":").append(teks(item.getNama()))
+                    .append(",\"kategori\":").append(teks(item.getKategori()))
+                    .append(",\"harga\":").append(item.getHarga())
+                    .append(",\"tersedia\":").append(item.isTersedia())
+                    .append(",\"deskripsi\":").append(teks(item.deskripsiTampilan()))
+                    .append('}');
+        }
+        return sb.append(']').toString();
+    }
+    
+    private String pesanan(HttpExchange tukar) throws IOException {
+        String[] bagian = tukar.getRequestURI().getPath().split("/");
+        // "/pesanan" -> ["", "pesanan"], "/pesanan/saya" -> ["", "pesanan", "saya"]
+        if (bagian.length == 2) {
+            wajibMetode(tukar, "POST");
+            return buatPesanan(tukar);
+        }
+        if (bagian.length == 3 && bagian[2].equals("saya")) {
+            wajibMetode(tukar, "GET");
+            return pesananSaya(tukar);
+        }
+        if (bagian.length == 4 && bagian[3].equals("status")) {
+            wajibMetode(tukar, "POST");
+            return ubahStatus(tukar, bagian[2]);
+        }
+        throw new HttpGagal(404, "Endpoint tidak ditemukan!");
+    }
+    
+    // Form: meja=A1&items=02:2,05:1
+    private String buatPesanan(HttpExchange tukar) throws IOException {
+        User user = sesiDari(tukar).getUser();
+        Map<String, String> form = bacaForm(tukar);
+        String daftarItem = form.get("items");
+        if (daftarItem == null || daftarItem.trim().isEmpty()) {
+            throw new IllegalArgumentException("Pesanan kosong! Tambahkan item terlebih dahulu.");
+        }
+        
+        Order order = new Order(form.get("meja"), user);
+        for (String entri : daftarItem.split(",")) {
+            String[] pasangan = entri.split(":");
+            MenuItem item = store.cariMenu(pasangan[0]);
+            if (item == null) {
+                throw new HttpGagal(404, "Menu dengan ID " + pasangan[0].trim() + " tidak ditemukan!");
+            }
+            if (!item.isTersedia()) {
+                throw new HttpGagal(409, "Maaf, menu " + item.getNama() + " sedang tidak tersedia!");
+            }
+            int jumlah = pasangan.length > 1 ? Integer.parseInt(pasangan[1].trim()) : 1;
+            if (jumlah <= 0 || jumlah > Order.MAKS_JUMLAH_ITEM) {
+                throw new IllegalArgumentException("Jumlah harus antara 1-" + Order.MAKS_JUMLAH_ITEM + "!");
+            }
+            order.tambahItem(item, jumlah);
+        }
+        
+        int poin = store.simpanPesanan(order, user);
+        return "{\"pesanan\":" + jsonPesanan(order) + ",\"poin\":" + poin + "}";
+    }
+    
+    // Query: dari=<posisi>&batas=<n>. Riwayat pelanggan hanya bertambah, jadi "berikutnya" tetap
+    // sah sebagai kursor walaupun pesanan baru masuk; null berarti halaman terakhir.
+    private String pesananSaya(HttpExchange tukar) {
+        User user = sesiDari(tukar).getUser();
+        Map<String, String> query = uraiPasangan(tukar.getRequestURI().getRawQuery());
+        int dari = Integer.parseInt(query.getOrDefault("dari", "0"));
+        int batas = Integer.parseInt(query.getOrDefault("batas", Integer.toString(HALAMAN_BAWAAN)));
+        if (dari < 0 || batas <= 0 || batas > MAKS_HALAMAN) {
+            throw new IllegalArgumentException("Parameter halaman tidak valid! batas harus 1-" + MAKS_HALAMAN + ".");
+        }
+        List<Order> daftar = store.getPesanan().halamanPelangganDari(user.getUsername(), dari, batas + 1);
+        StringBuilder sb = new StringBuilder("{\"pesanan\":[");
+        for (int i = 0; i < Math.min(batas, daftar.size()); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(jsonPesanan(daftar.get(i)));
+        }
+        sb.append("],\"berikutnya\":").append(daftar.size() > batas ? Integer.toString(dari + batas) : "null");
+        return sb.append('}').toString();
+    }
+    
+    private String ubahStatus(HttpExchange tukar, String idPesanan) throws IOException {
+        if (!sesiDari(tukar).getRole().equals("admin")) {
+            throw new HttpGagal(403, "Hanya admin yang dapat mengubah status pesanan!");
+        }
+        Order order = store.getPesanan().cari(idPesanan);
+        if (order == null) {
+            throw new HttpGagal(404, "Pesanan dengan ID tersebut tidak ditemukan!");
+        }
+        order.setStatus(bacaForm(tukar).get("status"));
+        return jsonPesanan(order);
+    }
+    
+    private Sesi sesiDari(HttpExchange tukar) {
+        String otorisasi = tukar.getRequestHeaders().getFirst("Authorization");
+        Sesi sesi = null;
+        if (otorisasi != null && otorisasi.startsWith("Bearer ")) {
+            sesi = store.getSesi().cari(otorisasi.substring(7).trim());
+        }
+        if (sesi == null) {
+            throw new HttpGagal(401, "Silakan login terlebih dahulu!");
+        }
+        return sesi;
+    }
+    
+    private static void wajibMetode(HttpExchange tukar, String metode) {
+        if (!tukar.getRequestMethod().equalsIgnoreCase(metode)) {
+            throw new HttpGagal(405, "Metode " + tukar.getRequestMethod() + " tidak didukung!");
+        }
+    }
+    
+    private static Map<String, String> bacaForm(HttpExchange tukar) throws IOException {
+        String isi;
+        try (InputStream masukan = tukar.getRequestBody()) {
+            isi = new String(masukan.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        return uraiPasangan(isi);
+    }
+    
+    // Form dan query sama-sama berbentuk kunci=nilai&...; null berarti kosong.
+    private static Map<String, String> uraiPasangan(String isi) {
+        Map<String, String> form = new HashMap<>();
+        if (isi == null) {
+            return form;
+        }
+        for (String pasangan : isi.split("&")) {
+            int pemisah = pasangan.indexOf('=');
+            if (pemisah > 0) {
+                form.put(URLDecoder.decode(pasangan.substring(0, pemisah), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pasangan.substring(pemisah + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+    
+    private static String jsonPesanan(Order order) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"id\":").append(teks(order.getId()))
+                .append(",\"meja\":").append(teks(order.getNomorMeja()))
+                .append(",\"pelanggan\":").append(teks(order.getNamaPelanggan()))
+                .append(",\"status\":").append(teks(order.getStatus()))
+                .append(",\"total\":").append(order.hitungTotal())
+                .append(",\"potongan\":").append(order.getPotongan())
+                .append(",\"totalBayar\":").append(order.hitungTotalBayar())
+                .append(",\"items\":[");
+        boolean pertama = true;
+        for (OrderItem item : order.getItems()) {
+            if (!pertama) {
+                sb.append(',');
+            }
+            pertama = false;
+            sb.append("{\"menuId\":").append(teks(item.getMenuItem().getId()))
+                    .append(",\"nama\":").append(teks(item.getMenuItem().getNama()))
+                    .append(",\"jumlah\":").append(item.getJumlah())
+                    .append(",\"subtotal\":").append(item.getSubtotal())
+                    .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+    
+    private static String galat(String pesan) {
+        return "{\"error\":" + teks(pesan) + "}";
+    }
+    
+    private static String teks(String nilai) {
+        if (nilai == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(nilai.length() + 2).append('"');
+        for (int i = 0; i < nilai.length(); i++) {
+            char c = nilai.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
+
+// Protokol baris untuk terminal POS lama. Setiap perintah diakhiri '\n', balasan "OK ..." atau "ERR ...".
+//   LOGIN <username> <password>   BUAT <meja>   TAMBAH <idMenu> [jumlah]   HAPUS <idMenu>
+//   SIMPAN   STATUS <idPesanan> <Baru|Diproses|Selesai|Dibatalkan>   KELUAR
+// SIMPAN membalas "OK <idPesanan> <totalBayar> <poin>", total sudah dipotong promo.
+class PosLineServer implements Runnable {
+    private static final int MAKS_BARIS = 512;
+    private static final int KAPASITAS_KELUAR = 2048;
+    // Baris berikutnya hanya diproses jika buffer keluar masih muat satu balasan terpanjang.
+    private static final int CADANGAN_BALASAN = 256;
+    
+    private static final byte[] CMD_LOGIN = ascii("LOGIN");
+    private static final byte[] CMD_BUAT = ascii("BUAT");
+    private static final byte[] CMD_TAMBAH = ascii("TAMBAH");
+    private static final byte[] CMD_HAPUS = ascii("HAPUS");
+    private static final byte[] CMD_SIMPAN = ascii("SIMPAN");
+    private static final byte[] CMD_STATUS = ascii("STATUS");
+    private static final byte[] CMD_KELUAR = ascii("KELUAR");
+    private static final byte[] OK = ascii("OK");
+    private static final byte[] ERR = ascii("ERR ");
+    private static final byte[][] LABEL_STATUS = new byte[StatusPesanan.values().length][];
+    
+    static {
+        for (StatusPesanan status : StatusPesanan.values()) {
+            LABEL_STATUS[status.ordinal()] = ascii(status.getLabel());
+        }
+    }
+    
+    private static class Koneksi {
+        private final ByteBuffer masuk = ByteBuffer.allocateDirect(MAKS_BARIS);
+        private final ByteBuffer keluar = ByteBuffer.allocateDirect(KAPASITAS_KELUAR);
+        private SelectionKey kunci;
+        private User user;
+        private Order draf;
+        private boolean tutupSetelahKirim;
+        // Selama password diverifikasi, baris berikutnya ditahan agar urutan balasan tetap.
+        private boolean menungguLogin;
+        // Balasan di buffer keluar belum boleh dikirim sampai rekamannya aman di disk.
+        private boolean menungguDisk;
+    }
+    
+    private final DomainStore store;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private volatile boolean berjalan = true;
+    // Galat yang menghentikan thread selector; dilaporkan oleh konsol, bukan dari thread ini.
+    private final AtomicReference<IOException> galat = new AtomicReference<>();
+    // Diisi thread verifikator dan flusher WAL, dijalankan di thread selector.
+    private final Queue<Runnable> tugasSelector = new ConcurrentLinkedQueue<>();
+    
+    public PosLineServer(DomainStore store, int port) throws IOException {
+        this.store = store;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+    
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+    
+    public void berhenti() {
+        berjalan = false;
+        selector.wakeup();
+    }
+    
+    // Galat yang menghentikan server, dikembalikan sekali saja; null jika server masih berjalan.
+    public IOException ambilGalat() {
+        return galat.getAndSet(null);
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (berjalan) {
+                selector.select();
+                Runnable tugas;
+                while ((tugas = tugasSelector.poll()) != null) {
+                    tugas.run();
+                }
+                Iterator<SelectionKey> kunciSiap = selector.selectedKeys().iterator();
+                while (kunciSiap.hasNext()) {
+                    SelectionKey kunci = kunciSiap.next();
+                    kunciSiap.remove();
+                    try {
+                        if (kunci.isAcceptable()) {
+                            terima();
+                        } else {
+                            if (kunci.isReadable()) {
+                                baca(kunci);
+                            }
+                            if (kunci.isValid() && kunci.isWritable()) {
+                                tulis(kunci);
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // Satu koneksi yang bermasalah tidak boleh menghentikan thread selector.
+                        tutup(kunci);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            galat.set(e);
+        } finally {
+            try {
+                for (SelectionKey kunci : selector.keys()) {
+                    kunci.channel().close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                // sudah berhenti, tidak ada yang perlu dilakukan
+            }
+        }
+    }
+    
+    private void terima() throws IOException {
+        SocketChannel kanal;
+        while ((kanal = server.accept()) != null) {
+            kanal.configureBlocking(false);
+            kanal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Koneksi koneksi = new Koneksi();
+            koneksi.kunci = kanal.register(selector, SelectionKey.OP_READ, koneksi);
+        }
+    }
+    
+    private void baca(SelectionKey kunci) throws IOException {
+        Koneksi koneksi = (Koneksi) kunci.attachment();
+        int dibaca = ((SocketChannel) kunci.channel()).read(koneksi.masuk);
+        if (dibaca < 0) {
+            tutup(kunci);
+            return;
+        }
+        prosesBaris(kunci, koneksi);
+    }
+    
+    private void prosesBaris(SelectionKey kunci, Koneksi koneksi) throws IOException {
+        boolean tertahan;
+        do {
+            int belumDiproses = koneksi.masuk.position();
+            tertahan = jalankanBarisLengkap(koneksi);
+            // Semua baris yang baru dijalankan menunggu satu group commit sebelum balasannya dikirim.
+            // Koneksi ini berhenti dibaca selama menunggu; thread selector tetap melayani kasir lain.
+            // Tanpa baris baru tidak perlu menunggu: balasan lama sudah menunggu pada putaran sebelumnya.
+            CompletableFuture<Void> durabel = koneksi.masuk.position() < belumDiproses
+                    ? store.sinkronAsync() : DomainStore.SUDAH_DURABEL;
+            if (!durabel.isDone() || durabel.isCompletedExceptionally()) {
+                koneksi.menungguDisk = true;
+                kunci.interestOps(0);
+                durabel.whenComplete((hasil, galat) -> {
+                    tugasSelector.add(() -> selesaiSinkron(koneksi, galat));
+                    selector.wakeup();
+                });
+                return;
+            }
+        } while (kirim(kunci, koneksi) && tertahan);
+    }
+    
+    private void selesaiSinkron(Koneksi koneksi, Throwable galat) {
+        SelectionKey kunci = koneksi.kunci;
+        if (!kunci.isValid()) {
+            return;
+        }
+        koneksi.menungguDisk = false;
+        try {
+            if (galat != null) {
+                // Perubahan belum tentu tersimpan, jadi kasir tidak boleh menerima OK.
+                tutup(kunci);
+            } else if (kirim(kunci, koneksi)) {
+                // Termasuk baris yang tertahan karena buffer penuh atau karena login selesai selama menunggu.
+                prosesBaris(kunci, koneksi);
+            }
+        } catch (IOException | RuntimeException e) {
+            tutup(kunci);
+        }
+    }
+    
+    private void tulis(SelectionKey kunci) throws IOException {
+        Koneksi koneksi = (Koneksi) kunci.attachment();
+        // Baris yang tertahan karena buffer keluar penuh diproses setelah buffer terkirim.
+        if (kirim(kunci, koneksi)) {
+            prosesBaris(kunci, koneksi);
+        }
+    }
+    
+    // Mengembalikan true jika masih ada baris lengkap yang tertahan karena buffer keluar penuh.
+    private boolean jalankanBarisLengkap(Koneksi koneksi) {
+        ByteBuffer masuk = koneksi.masuk;
+        masuk.flip();
+        int awal = masuk.position();
+        boolean tertahan = false;
+        for (int i = awal; i < masuk.limit() && !koneksi.tutupSetelahKirim && !koneksi.menungguLogin; i++) {
+            if (masuk.get(i) != '\n') {
+                continue;
+            }
+            if (koneksi.keluar.remaining() < CADANGAN_BALASAN) {
+                tertahan = true;
+                break;
+            }
+            int akhir = i > awal && masuk.get(i - 1) == '\r' ? i - 1 : i;
+            jalankan(koneksi, masuk, awal, akhir);
+            awal = i + 1;
+        }
+        masuk.position(awal);
+        if (!tertahan && awal == 0 && masuk.limit() == masuk.capacity()) {
+            tulisGalat(koneksi.keluar, "Baris perintah terlalu panjang!");
+            masuk.clear();
+        } else {
+            masuk.compact();
+        }
+        return tertahan;
+    }
+    
+    // Mengembalikan true jika seluruh isi buffer keluar sudah terkirim dan koneksi masih terbuka.
+    private boolean kirim(SelectionKey kunci, Koneksi koneksi) throws IOException {
+        ByteBuffer keluar = koneksi.keluar;
+        keluar.flip();
+        ((SocketChannel) kunci.channel()).write(keluar);
+        boolean sisa = keluar.hasRemaining();
+        keluar.compact();
+        if (sisa) {
+            kunci.interestOps(SelectionKey.OP_WRITE);
+            return false;
+        }
+        if (koneksi.tutupSetelahKirim) {
+            tutup(kunci);
+            return false;
+        }
+        if (koneksi.menungguLogin) {
+            kunci.interestOps(0);
+            return false;
+        }
+        kunci.interestOps(SelectionKey.OP_READ);
+        return true;
+    }
+    
+    private void selesaiLogin(Koneksi koneksi, User user, Throwable galat) {
+        SelectionKey kunci = koneksi.kunci;
+        if (!kunci.isValid()) {
+            return;
+        }
+        koneksi.menungguLogin = false;
+        ByteBuffer keluar = koneksi.keluar;
+        if (galat != null) {
+            Throwable sebab = galat instanceof CompletionException && galat.getCause() != null ? galat.getCause() : galat;
+            tulisGalat(keluar, sebab.getMessage());
+        } else if (user == null) {
+            tulisGalat(keluar, "Username atau password salah!");
+        } else {
+            koneksi.user = user;
+            keluar.put(OK).put((byte) ' ');
+            tulisAscii(keluar, user.getRole());
+            keluar.put((byte) '\n');
+        }
+        if (koneksi.menungguDisk) {
+            // Balasan sebelumnya belum durabel; selesaiSinkron yang akan mengirim semuanya berurutan.
+            return;
+        }
+        try {
+            // Balasan login dikirim lalu baris yang tertahan selama verifikasi dilanjutkan.
+            prosesBaris(kunci, koneksi);
+        } catch (IOException | RuntimeException e) {
+            tutup(kunci);
+        }
+    }
+    
+    private void tutup(SelectionKey kunci) {
+        kunci.cancel();
+        try {
+            kunci.channel().close();
+        } catch (IOException e) {
+            // kanal sudah tertutup
+        }
+    }
+    
+    private void jalankan(Koneksi koneksi, ByteBuffer baris, int awal, int akhir) {
+        ByteBuffer keluar = koneksi.keluar;
+        int posisi = lewatiSpasi(baris, awal, akhir);
+        int akhirPerintah = akhirToken(baris, posisi, akhir);
+        try {
+            if (sama(baris, posisi, akhirPerintah, CMD_LOGIN)) {
+                int akhirUser = akhirToken(baris, lewatiSpasi(baris, akhirPerintah, akhir), akhir);
+                String username = teks(baris, lewatiSpasi(baris, akhirPerintah, akhir), akhirUser);
+                String password = teks(baris, lewatiSpasi(baris, akhirUser, akhir), akhir);
+                // Hashing password tidak boleh menahan thread selector yang melayani semua kasir.
+                // Penanda dipasang setelah antre berhasil; selesaiLogin selalu berjalan belakangan di thread ini.
+                store.loginAsync(username, password).whenComplete((user, galat) -> {
+                    tugasSelector.add(() -> selesaiLogin(koneksi, user, galat));
+                    selector.wakeup();
+                });
+                koneksi.menungguLogin = true;
+            } else if (sama(baris, posisi, akhirPerintah, CMD_KELUAR)) {
+                keluar.put(OK).put((byte) '\n');
+                koneksi.tutupSetelahKirim = true;
+            } else if (koneksi.user == null) {
+                tulisGalat(keluar, "Silakan login terlebih dahulu!");
+            } else if (sama(baris, posisi, akhirPerintah, CMD_BUAT)) {
+                koneksi.draf = new Order(teks(baris, lewatiSpasi(baris, akhirPerintah, akhir), akhir), koneksi.user);
+                keluar.put(OK).put((byte) '\n');
+            } else if (sama(baris, posisi, akhirPerintah, CMD_TAMBAH)) {
+                int awalId = lewatiSpasi(baris, akhirPerintah, akhir);
+                int akhirId = akhirToken(baris, awalId, akhir);
+                long idMenu = angka(baris, awalId, akhirId);
+                int awalJumlah = lewatiSpasi(baris, akhirId, akhir);
+                long jumlah = awalJumlah == akhir ? 1 : angka(baris, awalJumlah, akhirToken(baris, awalJumlah, akhir));
+                tambahItem(koneksi, idMenu, jumlah);
+            } else if (sama(baris, posisi, akhirPerintah, CMD_HAPUS)) {
+                int awalId = lewatiSpasi(baris, akhirPerintah, akhir);
+                long idMenu = angka(baris, awalId, akhirToken(baris, awalId, akhir));
+                if (koneksi.draf == null) {
+                    tulisGalat(keluar, "Belum ada pesanan. Gunakan BUAT <meja>.");
+                } else if (koneksi.draf.hapusItem(idMenu)) {
+                    keluar.put(OK).put((byte) '\n');
+                } else {
+                    tulisGalat(keluar, "Item dengan ID tersebut tidak ditemukan dalam pesanan!");
+                }
+            } else if (sama(baris, posisi, akhirPerintah, CMD_SIMPAN)) {
+                if (koneksi.draf == null) {
+                    tulisGalat(keluar, "Belum ada pesanan. Gunakan BUAT <meja>.");
+                    return;
+                }
+                Order order = koneksi.draf;
+                int poin = store.simpanPesanan(order, koneksi.user);
+                koneksi.draf = null;
+                keluar.put(OK).put((byte) ' ');
+                tulisAngka(keluar, order.getNomorId());
+                keluar.put((byte) ' ');
+                tulisAngka(keluar, order.hitungTotalBayar());
+                keluar.put((byte) ' ');
+                tulisAngka(keluar, poin);
+                keluar.put((byte) '\n');
+            } else if (sama(baris, posisi, akhirPerintah, CMD_STATUS)) {
+                int awalId = lewatiSpasi(baris, akhirPerintah, akhir);
+                int akhirId = akhirToken(baris, awalId, akhir);
+                ubahStatus(koneksi, angka(baris, awalId, akhirId), baris, lewatiSpasi(baris, akhirId, akhir), akhir);
+            } else {
+                tulisGalat(keluar, "Perintah tidak dikenal!");
+            }
+        } catch (IllegalArgumentException e) {
+            tulisGalat(keluar, e.getMessage());
+        } catch (RuntimeException e) {
+            // Misalnya overflow jumlah atau total; hanya perintah ini yang gagal, koneksi tetap dilayani.
+            tulisGalat(keluar, "Perintah gagal diproses!");
+        }
+    }
+    
+    private void tambahItem(Koneksi koneksi, long idMenu, long jumlah) {
+        ByteBuffer keluar = koneksi.keluar;
+        if (koneksi.draf == null) {
+            tulisGalat(keluar, "Belum ada pesanan. Gunakan BUAT <meja>.");
+            return;
+        }
+        MenuItem item = store.cariMenu(idMenu);
+        if (item == null) {
+            tulisGalat(keluar, "Menu dengan ID tersebut tidak ditemukan!");
+        } else if (!item.isTersedia()) {
+            tulisGalat(keluar, "Maaf, menu ini sedang tidak tersedia!");
+        } else if (jumlah <= 0 || jumlah > Order.MAKS_JUMLAH_ITEM) {
+            tulisGalat(keluar, "Jumlah harus antara 1-" + Order.MAKS_JUMLAH_ITEM + "!");
+        } else {
+            koneksi.draf.tambahItem(item, (int) jumlah);
+            keluar.put(OK).put((byte) '\n');
+        }
+    }
+    
+    private void ubahStatus(Koneksi koneksi, long idPesanan, ByteBuffer baris, int awal, int akhir) {
+        ByteBuffer keluar = koneksi.keluar;
+        if (!koneksi.user.getRole().equals("admin")) {
+            tulisGalat(keluar, "Hanya admin yang dapat mengubah status pesanan!");
+            return;
+        }
+        Order order = store.getPesanan().cari(idPesanan);
+        if (order == null) {
+            tulisGalat(keluar, "Pesanan dengan ID tersebut tidak ditemukan!");
+            return;
+        }
+        int akhirLabel = akhirToken(baris, awal, akhir);
+        for (StatusPesanan status : StatusPesanan.values()) {
+            if (sama(baris, awal, akhirLabel, LABEL_STATUS[status.ordinal()])) {
+                order.setStatus(status);
+                keluar.put(OK).put((byte) '\n');
+                return;
+            }
+        }
+        tulisGalat(keluar, "Status pesanan tidak valid!");
+    }
+    
+    private static int lewatiSpasi(ByteBuffer buffer, int posisi, int akhir) {
+        while (posisi < akhir && buffer.get(posisi) == ' ') {
+            posisi++;
+        }
+        return posisi;
+    }
+    
+    private static int akhirToken(ByteBuffer buffer, int posisi, int akhir) {
+        while (posisi < akhir && buffer.get(posisi) != ' ') {
+            posisi++;
+        }
+        return posisi;
+    }
+    
+    private static boolean sama(ByteBuffer buffer, int awal, int akhir, byte[] kata) {
+        if (akhir - awal != kata.length) {
+            return false;
+        }
+        for (int i = 0; i < kata.length; i++) {
+            int b = buffer.get(awal + i);
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            int k = kata[i];
+            if (k >= 'a' && k <= 'z') {
+                k -= 'a' - 'A';
+            }
+            if (b != k) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static long angka(ByteBuffer buffer, int awal, int akhir) {
+        if (awal == akhir || akhir - awal > 18) {
+            throw new IllegalArgumentException("Input tidak valid! Masukkan angka.");
+        }
+        long hasil = 0;
+        for (int i = awal; i < akhir; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw new IllegalArgumentException("Input tidak valid! Masukkan angka.");
+            }
+            hasil = hasil * 10 + (b - '0');
+        }
+        return hasil;
+    }
+    
+    // Hanya untuk nilai yang memang harus menjadi String di domain (username, password, meja).
+    private static String teks(ByteBuffer buffer, int awal, int akhir) {
+        byte[] data = new byte[akhir - awal];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = buffer.get(awal + i);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+    
+    private static void tulisAngka(ByteBuffer keluar, long nilai) {
+        if (nilai < 0) {
+            keluar.put((byte) '-');
+            nilai = -nilai;
+        }
+        long pembagi = 1;
+        while (nilai / pembagi >= 10) {
+            pembagi *= 10;
+        }
+        for (; pembagi > 0; pembagi /= 10) {
+            keluar.put((byte) ('0' + (nilai / pembagi) % 10));
+        }
+    }
+    
+    private static void tulisAscii(ByteBuffer keluar, String teks) {
+        for (int i = 0; i < teks.length() && keluar.remaining() > 1; i++) {
+            char c = teks.charAt(i);
+            keluar.put((byte) (c < 0x80 ? c : '?'));
+        }
+    }
+    
+    private static void tulisGalat(ByteBuffer keluar, String pesan) {
+        keluar.put(ERR);
+        tulisAscii(keluar, pesan == null ? "Terjadi kesalahan" : pesan);
+        keluar.put((byte) '\n');
+    }
+    
+    private static byte[] ascii(String teks) {
+        return teks.getBytes(StandardCharsets.US_ASCII);
+    }
+}
+
+interface PendengarDomain {
+    void menuDisimpan(MenuItem item);
+    
+    void menuDihapus(MenuItem item);
+    
+    void penggunaDisimpan(User user);
+    
+    void penggunaDihapus(User user);
+    
+    void pesananDisimpan(Order order);
+    
+    void statusDiubah(Order order);
+    
+    void kredensialDiubah(User user);
+    
+    void blokMenuDicadangkan(long batas);
+    
+    void blokPesananDicadangkan(long batas);
+    
+    // Menunggu sampai semua peristiwa yang dicatat oleh thread ini aman di disk.
+    void sinkron();
+    
+    // Seperti sinkron(), tetapi tidak menahan thread; selesai setelah group commit yang memuatnya.
+    CompletableFuture<Void> sinkronAsync();
+}
+
+final class KodekDomain {
+    static final byte MENU_REGULAR = 1;
+    static final byte MENU_KOPI = 2;
+    static final byte MENU_MAKANAN = 3;
+    static final byte MENU_MINUMAN = 4;
+    
+    static final byte PENGGUNA_UMUM = 1;
+    static final byte PENGGUNA_ADMIN = 2;
+    static final byte PENGGUNA_PELANGGAN = 3;
+    
+    private KodekDomain() {
+    }
+    
+    static void tulisMenu(DataOutput keluar, MenuItem item) throws IOException {
+        if (item instanceof KopiItem) {
+            keluar.writeByte(MENU_KOPI);
+        } else if (item instanceof MakananItem) {
+            keluar.writeByte(MENU_MAKANAN);
+        } else if (item instanceof RestaurantEase.MinumanItem) {
+            keluar.writeByte(MENU_MINUMAN);
+        } else {
+            keluar.writeByte(MENU_REGULAR);
+        }
+        keluar.writeLong(item.getNomorId());
+        keluar.writeUTF(item.getNama());
+        keluar.writeUTF(item.getKategori());
+        keluar.writeLong(item.getHarga());
+        keluar.writeBoolean(item.isTersedia());
+        if (item instanceof KopiItem) {
+            KopiItem kopi = (KopiItem) item;
+            keluar.writeUTF(kopi.getJenisKopi());
+            keluar.writeUTF(kopi.getTingkatRoasting());
+        } else if (item instanceof MakananItem) {
+            MakananItem makanan = (MakananItem) item;
+            keluar.writeBoolean(makanan.isVegetarian());
+            keluar.writeUTF(makanan.getTopping());
+        } else if (item instanceof RestaurantEase.MinumanItem) {
+            RestaurantEase.MinumanItem minuman = (RestaurantEase.MinumanItem) item;
+            keluar.writeBoolean(minuman.isDingin());
+            keluar.writeInt(minuman.getLevelKemanisan());
+        }
+    }
+    
+    static MenuItem bacaMenu(DataInput masuk, MenuCatalog katalog) throws IOException {
+        return bacaMenu(masuk, katalog, false);
+    }
+    
+    // Membuat menu baru, atau memperbarui menu dengan ID yang sama jika sudah ada di katalog.
+    // Format lama menyimpan harga sebagai double; nilainya dibulatkan ke rupiah penuh.
+    static MenuItem bacaMenu(DataInput masuk, MenuCatalog katalog, boolean hargaDouble) throws IOException {
+        byte jenis = masuk.readByte();
+        long id = masuk.readLong();
+        String nama = masuk.readUTF();
+        String kategori = masuk.readUTF();
+        long harga = hargaDouble ? Math.round(masuk.readDouble()) : masuk.readLong();
+        boolean tersedia = masuk.readBoolean();
+        MenuItem item = katalog.cari(id);
+        switch (jenis) {
+            case MENU_KOPI: {
+                String jenisKopi = masuk.readUTF();
+                String roasting = masuk.readUTF();
+                if (item == null) {
+                    item = new KopiItem(id, nama, harga, jenisKopi, roasting);
+                } else {
+                    ((KopiItem) item).setJenisKopi(jenisKopi);
+                    ((KopiItem) item).setTingkatRoasting(roasting);
+                }
+                break;
+            }
+            case MENU_MAKANAN: {
+                boolean vegetarian = masuk.readBoolean();
+                String topping = masuk.readUTF();
+                if (item == null) {
+                    item = new MakananItem(id, nama, harga, vegetarian, topping);
+                } else {
+                    ((MakananItem) item).setVegetarian(vegetarian);
+                    ((MakananItem) item).setTopping(topping);
+                }
+                break;
+            }
+            case MENU_MINUMAN: {
+                boolean dingin = masuk.readBoolean();
+                int levelKemanisan = masuk.readInt();
+                if (item == null) {
+                    item = new RestaurantEase.MinumanItem(id, nama, harga, dingin, levelKemanisan);
+                } else {
+                    ((RestaurantEase.MinumanItem) item).setDingin(dingin);
+                    ((RestaurantEase.MinumanItem) item).setLevelKemanisan(levelKemanisan);
+                }
+                break;
+            }
+            case MENU_REGULAR:
+                if (item == null) {
+                    item = new MenuItem(id, nama, kategori, harga);
+                }
+                break;
+            default:
+                throw new IOException("Jenis menu tidak dikenal: " + jenis);
+        }
+        item.setNama(nama);
+        item.setKategori(kategori);
+        item.setHarga(harga);
+        item.pulihkanTersedia(tersedia);
+        return item;
+    }
+    
+    static void tulisPengguna(DataOutput keluar, User user) throws IOException {
+        if (user instanceof Admin) {
+            Admin admin = (Admin) user;
+            keluar.writeByte(PENGGUNA_ADMIN);
+            tulisDasarPengguna(keluar, user);
+            keluar.writeUTF(admin.getDepartemen());
+            keluar.writeInt(admin.getLevelAkses());
+        } else if (user instanceof Pelanggan) {
+            keluar.writeByte(PENGGUNA_PELANGGAN);
+            tulisDasarPengguna(keluar, user);
+            keluar.writeUTF(((Pelanggan) user).getNomorTelepon());
+            keluar.writeInt(((Pelanggan) user).getPoin());
+        } else {
+            keluar.writeByte(PENGGUNA_UMUM);
+            tulisDasarPengguna(keluar, user);
+            keluar.writeUTF(user.getRole());
+        }
+    }
+    
+    static User bacaPengguna(DataInput masuk) throws IOException {
+        byte jenis = masuk.readByte();
+        String username = masuk.readUTF();
+        Kredensial kredensial = Kredensial.dariTersimpan(masuk.readUTF());
+        String nama = masuk.readUTF();
+        switch (jenis) {
+            case PENGGUNA_ADMIN:
+                return new Admin(username, kredensial, nama, masuk.readUTF(), masuk.readInt());
+            case PENGGUNA_PELANGGAN: {
+                Pelanggan pelanggan = new Pelanggan(username, kredensial, nama, masuk.readUTF());
+                pelanggan.pulihkanPoin(masuk.readInt());
+                return pelanggan;
+            }
+            case PENGGUNA_UMUM:
+                return new User(username, kredensial, masuk.readUTF(), nama);
+            default:
+                throw new IOException("Jenis pengguna tidak dikenal: " + jenis);
+        }
+    }
+    
+    private static void tulisDasarPengguna(DataOutput keluar, User user) throws IOException {
+        keluar.writeUTF(user.getUsername());
+        keluar.writeUTF(user.getKredensial().tersimpan());
+        keluar.writeUTF(user.getNama());
+    }
+    
+    static void tulisPesanan(DataOutput keluar, Order order) throws IOException {
+        keluar.writeLong(order.getNomorId());
+        keluar.writeUTF(order.getNomorMeja());
+        keluar.writeUTF(order.getKunciPelanggan());
+        keluar.writeUTF(order.getNamaPelanggan());
+        keluar.writeLong(order.getWaktuPesan().toLocalDate().toEpochDay());
+        keluar.writeLong(order.getWaktuPesan().toLocalTime().toNanoOfDay());
+        keluar.writeByte(order.getStatusPesanan().ordinal());
+        List<OrderItem> items = order.getItems();
+        keluar.writeInt(items.size());
+        for (OrderItem item : items) {
+            keluar.writeLong(item.getMenuItem().getNomorId());
+            keluar.writeInt(item.getJumlah());
+            keluar.writeLong(item.getHarga());
+        }
+        keluar.writeLong(order.getPotongan());
+    }
+    
+    static Order bacaPesanan(DataInput masuk, LongFunction<MenuItem> cariMenu) throws IOException {
+        return bacaPesanan(masuk, cariMenu, true, true);
+    }
+    
+    // Format lama tidak menyimpan harga per baris (harga diambil dari menu saat dimuat) maupun
+    // potongan promo (dianggap nol).
+    static Order bacaPesanan(DataInput masuk, LongFunction<MenuItem> cariMenu, boolean denganHarga,
+            boolean denganPotongan) throws IOException {
+        long id = masuk.readLong();
+        String meja = masuk.readUTF();
+        String kunciPelanggan = masuk.readUTF();
+        String namaPelanggan = masuk.readUTF();
+        LocalDateTime waktu = LocalDateTime.of(LocalDate.ofEpochDay(masuk.readLong()),
+                LocalTime.ofNanoOfDay(masuk.readLong()));
+        StatusPesanan status = StatusPesanan.values()[masuk.readByte()];
+        Order order = new Order(id, meja, kunciPelanggan, namaPelanggan, waktu, status);
+        int jumlahBaris = masuk.readInt();
+        for (int i = 0; i < jumlahBaris; i++) {
+            long idMenu = masuk.readLong();
+            int jumlah = masuk.readInt();
+            long harga = denganHarga ? masuk.readLong() : -1;
+            MenuItem item = cariMenu.apply(idMenu);
+            if (item == null) {
+                throw new IOException("Pesanan #" + id + " merujuk menu yang tidak ada: " + idMenu);
+            }
+            order.tambahItem(item, jumlah, denganHarga ? harga : item.getHarga());
+        }
+        if (denganPotongan) {
+            order.setPotongan(masuk.readLong());
+        }
+        return order;
+    }
+}
+
+class WriteAheadLog implements PendengarDomain, Closeable {
+    // Format rekaman: [int panjang][int crc32][byte jenis][isi]. Panjang 0 berarti akhir log,
+    // PENANDA_LOMPAT berarti sisa segmen kosong dan rekaman berikutnya ada di segmen selanjutnya.
+    private static final int UKURAN_SEGMEN = 16 * 1024 * 1024;
+    private static final int UKURAN_HEADER = 8;
+    private static final int PENANDA_LOMPAT = -1;
+    // Setelah dipadatkan, awal berkas berisi [int PENANDA_PENSIUN][long batas] dan semua byte
+    // sebelum batas sudah ditimpa nol; replay hanya boleh dimulai dari batas itu atau sesudahnya.
+    private static final int PENANDA_PENSIUN = -2;
+    private static final int UKURAN_HEADER_PENSIUN = 12;
+    private static final long INTERVAL_FLUSH_MS = 10;
+    
+    // Rekaman tipe 1 berasal dari versi dengan harga double dan hanya dibaca saat replay.
+    private static final byte MENU_SIMPAN_LAMA = 1;
+    private static final byte MENU_HAPUS = 2;
+    private static final byte PENGGUNA_SIMPAN = 3;
+    private static final byte PENGGUNA_HAPUS = 4;
+    // Rekaman tipe 5 berasal dari versi tanpa harga per baris pesanan.
+    private static final byte PESANAN_SIMPAN_LAMA = 5;
+    private static final byte STATUS = 6;
+    private static final byte POIN = 7;
+    private static final byte BLOK_MENU = 8;
+    private static final byte BLOK_PESANAN = 9;
+    private static final byte MENU_SIMPAN = 10;
+    private static final byte PESANAN_SIMPAN_TANPA_POTONGAN = 11;
+    private static final byte KREDENSIAL = 12;
+    private static final byte PESANAN_SIMPAN = 13;
+    
+    private final FileChannel kanal;
+    private MappedByteBuffer segmen;
+    private long awalSegmen;
+    private int posisi;
+    private int jumlahRekaman;
+    // Hanya diubah thread snapshot.
+    private long batasPensiun;
+    
+    private final ByteArrayOutputStream bufferRekaman = new ByteArrayOutputStream(256);
+    private final DataOutputStream keluaran = new DataOutputStream(bufferRekaman);
+    private final CRC32 crc = new CRC32();
+    private final ThreadLocal<long[]> lsnThread = ThreadLocal.withInitial(() -> new long[1]);
+    
+    // Group commit: penulis hanya menyalin ke halaman yang dipetakan; satu thread flusher
+    // memanggil force() untuk semua rekaman yang terkumpul lalu membangunkan semua penunggu.
+    private final Object kunciFlush = new Object();
+    private long posisiTertulis;
+    private long posisiDurabel;
+    private long posisiDiminta;
+    private volatile boolean berjalan = true;
+    private final Thread flusher;
+    // Penunggu tanpa blok per posisi log; beberapa pemanggil dengan posisi sama berbagi satu future.
+    private final TreeMap<Long, CompletableFuture<Void>> janjiDurabel = new TreeMap<>();
+    
+    private WriteAheadLog(FileChannel kanal) {
+        this.kanal = kanal;
+        this.flusher = new Thread(this::jalankanFlusher, "wal-flusher");
+        this.flusher.setDaemon(true);
+    }
+    
+    public static WriteAheadLog buka(Path berkas, DomainStore store) throws IOException {
+        return buka(berkas, store, 0);
+    }
+    
+    // Membuka log dan memutar ulang isinya mulai dari posisi yang tercatat di snapshot
+    // (0 jika tidak ada snapshot) sebelum pencatatan dimulai.
+    public static WriteAheadLog buka(Path berkas, DomainStore store, long mulaiDari) throws IOException {
+        FileChannel kanal = FileChannel.open(berkas, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        WriteAheadLog wal = new WriteAheadLog(kanal);
+        wal.putarUlang(store, mulaiDari);
+        wal.posisiTertulis = wal.awalSegmen + wal.posisi;
+        wal.posisiDurabel = wal.posisiTertulis;
+        wal.flusher.start();
+        return wal;
+    }
+    
+    public boolean isKosong() {
+        return jumlahRekaman == 0;
+    }
+    
+    // Menunggu semua rekaman yang sudah ditulis aman di disk lalu mengembalikan posisi akhirnya.
+    public long sinkronSampaiAkhir() {
+        long akhir;
+        synchronized (this) {
+            akhir = posisiTertulis;
+        }
+        tunggu(akhir);
+        return akhir;
+    }
+    
+    private void putarUlang(DomainStore store, long mulaiDari) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(UKURAN_HEADER_PENSIUN);
+        kanal.read(header, 0);
+        if (header.getInt(0) == PENANDA_PENSIUN) {
+            batasPensiun = header.getLong(4);
+            if (mulaiDari < batasPensiun) {
+                throw new IOException("Log sebelum posisi " + batasPensiun
+                        + " sudah dipadatkan, snapshot yang mencakupnya dibutuhkan!");
+            }
+        }
+        awalSegmen = mulaiDari - mulaiDari % UKURAN_SEGMEN;
+        segmen = petakan(awalSegmen);
+        posisi = (int) (mulaiDari % UKURAN_SEGMEN);
+        while (true) {
+            if (posisi + UKURAN_HEADER > UKURAN_SEGMEN) {
+                pindahSegmen(awalSegmen + UKURAN_SEGMEN);
+                continue;
+            }
+            int panjang = segmen.getInt(posisi);
+            if (panjang == PENANDA_LOMPAT) {
+                pindahSegmen(awalSegmen + UKURAN_SEGMEN);
+                continue;
+            }
+            if (panjang <= 0 || posisi + UKURAN_HEADER + panjang > UKURAN_SEGMEN) {
+                break;
+            }
+            byte[] isi = new byte[panjang];
+            segmen.get(posisi + UKURAN_HEADER, isi);
+            crc.reset();
+            crc.update(isi);
+            if ((int) crc.getValue() != segmen.getInt(posisi + 4)) {
+                // Ekor yang robek akibat crash: dibuang dan ditimpa oleh rekaman berikutnya.
+                for (int i = posisi; i < UKURAN_SEGMEN; i++) {
+                    segmen.put(i, (byte) 0);
+                }
+                break;
+            }
+            terapkan(new DataInputStream(new ByteArrayInputStream(isi)), store);
+            posisi += UKURAN_HEADER + panjang;
+            jumlahRekaman++;
+        }
+    }
+    
+    private void terapkan(DataInputStream masuk, DomainStore store) throws IOException {
+        byte jenis = masuk.readByte();
+        switch (jenis) {
+            case MENU_SIMPAN_LAMA:
+            case MENU_SIMPAN: {
+                MenuItem item = KodekDomain.bacaMenu(masuk, store.getKatalog(), jenis == MENU_SIMPAN_LAMA);
+                if (store.getKatalog().cari(item.getNomorId()) == null) {
+                    store.getKatalog().tambah(item);
+                }
+                break;
+            }
+            case MENU_HAPUS:
+                store.getKatalog().hapus(masuk.readLong());
+                break;
+            case PENGGUNA_SIMPAN:
+                store.daftarkanPengguna(KodekDomain.bacaPengguna(masuk));
+                break;
+            case PENGGUNA_HAPUS:
+                store.hapusPengguna(masuk.readUTF());
+                break;
+            case PESANAN_SIMPAN_LAMA:
+            case PESANAN_SIMPAN_TANPA_POTONGAN:
+            case PESANAN_SIMPAN: {
+                Order order = KodekDomain.bacaPesanan(masuk, store.getKatalog()::cari,
+                        jenis != PESANAN_SIMPAN_LAMA, jenis == PESANAN_SIMPAN);
+                // Bisa sudah ada jika snapshot diambil sesaat setelah rekaman ini ditulis.
+                if (store.getPesanan().cari(order.getNomorId()) == null) {
+                    store.getPesanan().tambah(order);
+                }
+                break;
+            }
+            case STATUS: {
+                Order order = store.getPesanan().cari(masuk.readLong());
+                StatusPesanan status = StatusPesanan.values()[masuk.readByte()];
+                if (order != null) {
+                    order.setStatus(status);
+                }
+                break;
+            }
+            // Rekaman log lama; BukuPoin menjadikan selisihnya dengan pesanan sebagai entri pembuka.
+            case POIN:
+                store.pulihkanSaldoPoinLama(masuk.readUTF(), masuk.readInt());
+                break;
+            case KREDENSIAL: {
+                User user = store.cariPengguna(masuk.readUTF());
+                Kredensial kredensial = Kredensial.dariTersimpan(masuk.readUTF());
+                if (user != null) {
+                    user.gantiKredensial(user.getKredensial(), kredensial);
+                }
+                break;
+            }
+            case BLOK_MENU:
+                store.getKatalog().catatIdTerbesar(masuk.readLong() - 1);
+                break;
+            case BLOK_PESANAN:
+                store.getPesanan().catatIdTerbesar(masuk.readLong() - 1);
+                break;
+            default:
+                throw new IOException("Jenis rekaman WAL tidak dikenal: " + jenis);
+        }
+    }
+    
+    @Override
+    public void menuDisimpan(MenuItem item) {
+        synchronized (this) {
+            mulaiRekaman(MENU_SIMPAN);
+            try {
+                KodekDomain.tulisMenu(keluaran, item);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void menuDihapus(MenuItem item) {
+        synchronized (this) {
+            mulaiRekaman(MENU_HAPUS);
+            try {
+                keluaran.writeLong(item.getNomorId());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void penggunaDisimpan(User user) {
+        synchronized (this) {
+            mulaiRekaman(PENGGUNA_SIMPAN);
+            try {
+                KodekDomain.tulisPengguna(keluaran, user);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void penggunaDihapus(User user) {
+        synchronized (this) {
+            mulaiRekaman(PENGGUNA_HAPUS);
+            try {
+                keluaran.writeUTF(user.getUsername());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void pesananDisimpan(Order order) {
+        synchronized (this) {
+            mulaiRekaman(PESANAN_SIMPAN);
+            try {
+                KodekDomain.tulisPesanan(keluaran, order);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void statusDiubah(Order order) {
+        synchronized (this) {
+            mulaiRekaman(STATUS);
+            try {
+                keluaran.writeLong(order.getNomorId());
+                keluaran.writeByte(order.getStatusPesanan().ordinal());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void kredensialDiubah(User user) {
+        synchronized (this) {
+            mulaiRekaman(KREDENSIAL);
+            try {
+                keluaran.writeUTF(user.getUsername());
+                keluaran.writeUTF(user.getKredensial().tersimpan());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void blokMenuDicadangkan(long batas) {
+        synchronized (this) {
+            mulaiRekaman(BLOK_MENU);
+            try {
+                keluaran.writeLong(batas);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void blokPesananDicadangkan(long batas) {
+        synchronized (this) {
+            mulaiRekaman(BLOK_PESANAN);
+            try {
+                keluaran.writeLong(batas);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            selesaiRekaman();
+        }
+    }
+    
+    @Override
+    public void sinkron() {
+        tunggu(lsnThread.get()[0]);
+    }
+    
+    private void tunggu(long lsn) {
+        synchronized (kunciFlush) {
+            if (lsn <= posisiDurabel) {
+                return;
+            }
+            posisiDiminta = Math.max(posisiDiminta, lsn);
+            kunciFlush.notifyAll();
+            while (posisiDurabel < lsn) {
+                if (!berjalan) {
+                    throw new IllegalStateException("WAL sudah ditutup!");
+                }
+                try {
+                    kunciFlush.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Menunggu WAL terputus", e);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Void> sinkronAsync() {
+        long lsn = lsnThread.get()[0];
+        synchronized (kunciFlush) {
+            if (lsn <= posisiDurabel) {
+                return DomainStore.SUDAH_DURABEL;
+            }
+            if (!berjalan) {
+                return CompletableFuture.failedFuture(new IllegalStateException("WAL sudah ditutup!"));
+            }
+            posisiDiminta = Math.max(posisiDiminta, lsn);
+            kunciFlush.notifyAll();
+            return janjiDurabel.computeIfAbsent(lsn, posisi -> new CompletableFuture<>());
+        }
+    }
+    
+    // Dipanggil setelah snapshot dengan posisi ini aman di disk. Rekaman sebelumnya, termasuk
+    // password teks biasa dari versi lama, ditimpa nol. Ukuran berkas tetap karena posisi log
+    // adalah offset berkas; rekaman baru selalu ditulis sesudah posisi ini sehingga tidak bentrok.
+    public void pensiunkanSebelum(long posisiSnapshot) throws IOException {
+        if (posisiSnapshot <= Math.max(batasPensiun, UKURAN_HEADER_PENSIUN)) {
+            return;
+        }
+        // Header ditulis dulu: jika crash di tengah, replay dari snapshot lama gagal dengan jelas
+        // alih-alih membaca log yang sebagian sudah kosong.
+        ByteBuffer header = ByteBuffer.allocate(UKURAN_HEADER_PENSIUN);
+        header.putInt(PENANDA_PENSIUN).putLong(posisiSnapshot).flip();
+        while (header.hasRemaining()) {
+            kanal.write(header, header.position());
+        }
+        kanal.force(false);
+        ByteBuffer nol = ByteBuffer.allocate(1 << 16);
+        for (long p = Math.max(batasPensiun, UKURAN_HEADER_PENSIUN); p < posisiSnapshot; ) {
+            nol.clear().limit((int) Math.min(nol.capacity(), posisiSnapshot - p));
+            p += kanal.write(nol, p);
+        }
+        kanal.force(false);
+        batasPensiun = posisiSnapshot;
+    }
+    
+    private void mulaiRekaman(byte jenis) {
+        bufferRekaman.reset();
+        bufferRekaman.write(jenis);
+    }
+    
+    // Dipanggil sambil memegang kunci objek ini.
+    private void selesaiRekaman() {
+        byte[] isi = bufferRekaman.toByteArray();
+        if (UKURAN_HEADER + isi.length + UKURAN_HEADER > UKURAN_SEGMEN) {
+            throw new IllegalArgumentException("Rekaman WAL terlalu besar!");
+        }
+        try {
+            if (posisi + UKURAN_HEADER + isi.length + UKURAN_HEADER > UKURAN_SEGMEN) {
+                segmen.putInt(posisi, PENANDA_LOMPAT);
+                segmen.force();
+                pindahSegmen(awalSegmen + UKURAN_SEGMEN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        crc.reset();
+        crc.update(isi);
+        segmen.put(posisi + UKURAN_HEADER, isi);
+        segmen.putInt(posisi + 4, (int) crc.getValue());
+        // Panjang ditulis terakhir supaya pembaca tidak pernah melihat rekaman setengah jadi.
+        segmen.putInt(posisi, isi.length);
+        posisi += UKURAN_HEADER + isi.length;
+        jumlahRekaman++;
+        posisiTertulis = awalSegmen + posisi;
+        lsnThread.get()[0] = posisiTertulis;
+    }
+    
+    private void pindahSegmen(long awalBaru) throws IOException {
+        awalSegmen = awalBaru;
+        segmen = petakan(awalSegmen);
+        posisi = 0;
+    }
+    
+    private MappedByteBuffer petakan(long awal) throws IOException {
+        return kanal.map(FileChannel.MapMode.READ_WRITE, awal, UKURAN_SEGMEN);
+    }
+    
+    private void jalankanFlusher() {
+        while (true) {
+            synchronized (kunciFlush) {
+                if (berjalan && posisiDiminta <= posisiDurabel) {
+                    try {
+                        kunciFlush.wait(INTERVAL_FLUSH_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            long target;
+            MappedByteBuffer aktif;
+            synchronized (this) {
+                target = posisiTertulis;
+                aktif = segmen;
+            }
+            if (target > posisiDurabelSaatIni()) {
+                aktif.force();
+                List<CompletableFuture<Void>> selesai;
+                synchronized (kunciFlush) {
+                    posisiDurabel = Math.max(posisiDurabel, target);
+                    kunciFlush.notifyAll();
+                    Map<Long, CompletableFuture<Void>> durabel = janjiDurabel.headMap(posisiDurabel, true);
+                    selesai = new ArrayList<>(durabel.values());
+                    durabel.clear();
+                }
+                // Diselesaikan di luar kunci; penunggu (misalnya selector POS) cukup mengantre balasan.
+                for (CompletableFuture<Void> janji : selesai) {
+                    janji.complete(null);
+                }
+            }
+            if (!berjalan) {
+                return;
+            }
+        }
+    }
+    
+    private long posisiDurabelSaatIni() {
+        synchronized (kunciFlush) {
+            return posisiDurabel;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        synchronized (kunciFlush) {
+            berjalan = false;
+            kunciFlush.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segmen.force();
+        }
+        List<CompletableFuture<Void>> tertinggal;
+        synchronized (kunciFlush) {
+            tertinggal = new ArrayList<>(janjiDurabel.values());
+            janjiDurabel.clear();
+        }
+        for (CompletableFuture<Void> janji : tertinggal) {
+            janji.completeExceptionally(new IllegalStateException("WAL sudah ditutup!"));
+        }
+        kanal.close();
+    }
+}
+
+// Berkas katalog read-only yang dipetakan ke memori. Beberapa JVM terminal di satu mesin
+// berbagi satu salinan di page cache; menu dibaca langsung dari berkas lewat Tampilan.
+final class KatalogTerpeta {
+    private static final int MAGIC = 0x5245434B;
+    // Versi 1 menyimpan harga sebagai double, versi 2 sebagai long rupiah.
+    private static final int VERSI = 2;
+    private static final int UKURAN_HEADER = 16;
+    // Rekaman berukuran tetap dan terurut menurut ID, jadi pencarian cukup binary search.
+    private static final int UKURAN_REKAMAN = 40;
+    private static final int OFS_HARGA = 8;
+    private static final int OFS_NAMA = 16;
+    private static final int OFS_KATEGORI = 20;
+    private static final int OFS_ATRIBUT1 = 24;
+    private static final int OFS_ATRIBUT2 = 28;
+    private static final int OFS_JENIS = 32;
+    private static final int OFS_BENDERA = 33;
+    private static final int OFS_KEMANISAN = 34;
+    private static final int TANPA_TEKS = -1;
+    
+    private static final int BENDERA_TERSEDIA = 1;
+    private static final int BENDERA_VEGETARIAN = 2;
+    private static final int BENDERA_DINGIN = 4;
+    
+    private final ByteBuffer isi;
+    private final int jumlah;
+    private final boolean hargaDouble;
+    
+    private KatalogTerpeta(ByteBuffer isi, int jumlah, boolean hargaDouble) {
+        this.isi = isi;
+        this.jumlah = jumlah;
+        this.hargaDouble = hargaDouble;
+    }
+    
+    static void tulis(Iterable<MenuItem> menu, Path berkas) throws IOException {
+        List<MenuItem> daftar = new ArrayList<>();
+        for (MenuItem item : menu) {
+            daftar.add(item);
+        }
+        daftar.sort((a, b) -> Long.compare(a.getNomorId(), b.getNomorId()));
+        
+        // Teks yang sama (kategori, jenis kopi, topping) hanya disimpan sekali.
+        ByteArrayOutputStream kolamTeks = new ByteArrayOutputStream();
+        DataOutputStream keluarTeks = new DataOutputStream(kolamTeks);
+        Map<String, Integer> offsetTeks = new HashMap<>();
+        ByteBuffer rekaman = ByteBuffer.allocate(UKURAN_HEADER + daftar.size() * UKURAN_REKAMAN);
+        rekaman.putInt(MAGIC).putInt(VERSI).putInt(daftar.size()).putInt(0);
+        for (MenuItem item : daftar) {
+            int basis = rekaman.position();
+            int atribut1 = TANPA_TEKS;
+            int atribut2 = TANPA_TEKS;
+            byte jenis = KodekDomain.MENU_REGULAR;
+            int bendera = item.isTersedia() ? BENDERA_TERSEDIA : 0;
+            int kemanisan = 0;
+            if (item instanceof KopiItem) {
+                jenis = KodekDomain.MENU_KOPI;
+                atribut1 = simpanTeks(((KopiItem) item).getJenisKopi(), keluarTeks, offsetTeks);
+                atribut2 = simpanTeks(((KopiItem) item).getTingkatRoasting(), keluarTeks, offsetTeks);
+            } else if (item instanceof MakananItem) {
+                jenis = KodekDomain.MENU_MAKANAN;
+                bendera |= ((MakananItem) item).isVegetarian() ? BENDERA_VEGETARIAN : 0;
+                atribut1 = simpanTeks(((MakananItem) item).getTopping(), keluarTeks, offsetTeks);
+            } else if (item instanceof RestaurantEase.MinumanItem) {
+                jenis = KodekDomain.MENU_MINUMAN;
+                bendera |= ((RestaurantEase.MinumanItem) item).isDingin() ? BENDERA_DINGIN : 0;
+                kemanisan = ((RestaurantEase.MinumanItem) item).getLevelKemanisan();
+            }
+            rekaman.putLong(basis, item.getNomorId());
+            rekaman.putLong(basis + OFS_HARGA, item.getHarga());
+            rekaman.putInt(basis + OFS_NAMA, simpanTeks(item.getNama(), keluarTeks, offsetTeks));
+            rekaman.putInt(basis + OFS_KATEGORI, simpanTeks(item.getKategori(), keluarTeks, offsetTeks));
+            rekaman.putInt(basis + OFS_ATRIBUT1, atribut1);
+            rekaman.putInt(basis + OFS_ATRIBUT2, atribut2);
+            rekaman.put(basis + OFS_JENIS, jenis);
+            rekaman.put(basis + OFS_BENDERA, (byte) bendera);
+            rekaman.put(basis + OFS_KEMANISAN, (byte) kemanisan);
+            rekaman.position(basis + UKURAN_REKAMAN);
+        }
+        
+        Path sementara = berkas.resolveSibling(berkas.getFileName() + ".tmp");
+        try (FileChannel kanal = FileChannel.open(sementara, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            rekaman.flip();
+            ByteBuffer teks = ByteBuffer.wrap(kolamTeks.toByteArray());
+            while (rekaman.hasRemaining() || teks.hasRemaining()) {
+                kanal.write(new ByteBuffer[] {rekaman, teks});
+            }
+            kanal.force(true);
+        }
+        // Proses yang sudah memetakan berkas lama tetap membaca versi lama sampai dibuka ulang.
+        Files.move(sementara, berkas, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static int simpanTeks(String teks, DataOutputStream keluar, Map<String, Integer> offsetTeks)
+            throws IOException {
+        Integer offset = offsetTeks.get(teks);
+        if (offset == null) {
+            offset = keluar.size();
+            keluar.writeUTF(teks);
+            offsetTeks.put(teks, offset);
+        }
+        return offset;
+    }
+    
+    // Hanya header yang diperiksa, jadi waktu buka tidak bergantung pada jumlah menu.
+    static KatalogTerpeta buka(Path berkas) throws IOException {
+        try (FileChannel kanal = FileChannel.open(berkas, StandardOpenOption.READ)) {
+            if (kanal.size() < UKURAN_HEADER) {
+                throw new IOException("Katalog bersama rusak: berkas terlalu pendek!");
+            }
+            MappedByteBuffer isi = kanal.map(FileChannel.MapMode.READ_ONLY, 0, kanal.size());
+            if (isi.getInt(0) != MAGIC) {
+                throw new IOException("Berkas bukan katalog RestaurantEase!");
+            }
+            int versi = isi.getInt(4);
+            if (versi < 1 || versi > VERSI) {
+                throw new IOException("Versi katalog tidak didukung: " + versi);
+            }
+            int jumlah = isi.getInt(8);
+            if (jumlah < 0 || UKURAN_HEADER + (long) jumlah * UKURAN_REKAMAN > kanal.size()) {
+                throw new IOException("Katalog bersama rusak: jumlah menu tidak cocok dengan ukuran berkas!");
+            }
+            return new KatalogTerpeta(isi, jumlah, versi == 1);
+        }
+    }
+    
+    public int ukuran() { return jumlah; }
+    
+    // Mengembalikan indeks menu dengan ID tersebut, atau -1 jika tidak ada.
+    public int cari(long id) {
+        int kiri = 0;
+        int kanan = jumlah - 1;
+        while (kiri <= kanan) {
+            int tengah = (kiri + kanan) >>> 1;
+            long idTengah = isi.getLong(UKURAN_HEADER + tengah * UKURAN_REKAMAN);
+            if (idTengah < id) {
+                kiri = tengah + 1;
+            } else if (idTengah > id) {
+                kanan = tengah - 1;
+            } else {
+                return tengah;
+            }
+        }
+        return -1;
+    }
+    
+    public Tampilan tampilan() {
+        return new Tampilan();
+    }
+    
+    // Membuat objek MenuItem biasa, hanya untuk menu yang benar-benar dipesan.
+    public MenuItem buatMenuItem(int indeks) {
+        Tampilan t = tampilan().pindahKe(indeks);
+        MenuItem item;
+        switch (t.jenis()) {
+            case KodekDomain.MENU_KOPI:
+                item = new KopiItem(t.getNomorId(), t.getNama(), t.getHarga(), t.teks(OFS_ATRIBUT1), t.teks(OFS_ATRIBUT2));
+                break;
+            case KodekDomain.MENU_MAKANAN:
+                item = new MakananItem(t.getNomorId(), t.getNama(), t.getHarga(), t.isVegetarian(), t.teks(OFS_ATRIBUT1));
+                break;
+            case KodekDomain.MENU_MINUMAN:
+                item = new RestaurantEase.MinumanItem(t.getNomorId(), t.getNama(), t.getHarga(), t.isDingin(),
+                        t.getLevelKemanisan());
+                break;
+            default:
+                item = new MenuItem(t.getNomorId(), t.getNama(), t.getKategori(), t.getHarga());
+        }
+        item.pulihkanTersedia(t.isTersedia());
+        return item;
+    }
+    
+    // Flyweight: satu objek dipindahkan dari rekaman ke rekaman, tanpa objek per menu.
+    final class Tampilan {
+        private int basis;
+        
+        private Tampilan() {
+        }
+        
+        public Tampilan pindahKe(int indeks) {
+            if (indeks < 0 || indeks >= jumlah) {
+                throw new IndexOutOfBoundsException("Indeks menu di luar jangkauan: " + indeks);
+            }
+            basis = UKURAN_HEADER + indeks * UKURAN_REKAMAN;
+            return this;
+        }
+        
+        public long getNomorId() { return isi.getLong(basis); }
+        
+        public String getId() { return String.format("%02d", getNomorId()); }
+        
+        public String getNama() { return teks(OFS_NAMA); }
+        
+        public String getKategori() { return teks(OFS_KATEGORI); }
+        
+        public long getHarga() {
+            return hargaDouble ? Math.round(isi.getDouble(basis + OFS_HARGA)) : isi.getLong(basis + OFS_HARGA);
+        }
+        
+        public boolean isTersedia() { return (isi.get(basis + OFS_BENDERA) & BENDERA_TERSEDIA) != 0; }
+        
+        public boolean isVegetarian() { return (isi.get(basis + OFS_BENDERA) & BENDERA_VEGETARIAN) != 0; }
+        
+        public boolean isDingin() { return (isi.get(basis + OFS_BENDERA) & BENDERA_DINGIN) != 0; }
+        
+        public int getLevelKemanisan() { return isi.get(basis + OFS_KEMANISAN); }
+        
+        private byte jenis() { return isi.get(basis + OFS_JENIS); }
+        
+        private String teks(int kolom) {
+            int offset = isi.getInt(basis + kolom);
+            if (offset == TANPA_TEKS) {
+                return null;
+            }
+            int awal = UKURAN_HEADER + jumlah * UKURAN_REKAMAN + offset;
+            int panjang = isi.getShort(awal) & 0xFFFF;
+            byte[] data = new byte[panjang];
+            isi.get(awal + 2, data);
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        
+        public String getDeskripsi() {
+            switch (jenis()) {
+                case KodekDomain.MENU_KOPI:
+                    return TeksMenu.deskripsiKopi(getNama(), teks(OFS_ATRIBUT1), teks(OFS_ATRIBUT2));
+                case KodekDomain.MENU_MAKANAN:
+                    return TeksMenu.deskripsiMakanan(getNama(), isVegetarian(), teks(OFS_ATRIBUT1));
+                case KodekDomain.MENU_MINUMAN:
+                    return TeksMenu.deskripsiMinuman(getNama(), isDingin(), getLevelKemanisan());
+                default:
+                    return TeksMenu.DESKRIPSI_REGULAR;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            String dasar = TeksMenu.dasar(getNomorId(), getNama(), getKategori(), getHarga(), isTersedia());
+            switch (jenis()) {
+                case KodekDomain.MENU_KOPI:
+                    return TeksMenu.kopi(dasar, teks(OFS_ATRIBUT1), teks(OFS_ATRIBUT2));
+                case KodekDomain.MENU_MAKANAN:
+                    return TeksMenu.makanan(dasar, isVegetarian(), teks(OFS_ATRIBUT1));
+                case KodekDomain.MENU_MINUMAN:
+                    return TeksMenu.minuman(dasar, isDingin(), getLevelKemanisan());
+                default:
+                    return dasar;
+            }
+        }
+    }
+}
+
+final class SnapshotDomain {
+    private static final int MAGIC = 0x52455350;
+    // Versi 1 hanya berisi pesanan terbuka; versi 2 berisi semua pesanan;
+    // versi 3 menyimpan harga sebagai long rupiah; versi 4 menyimpan harga per baris pesanan;
+    // versi 5 menyimpan entri pembuka buku poin; versi 6 menyimpan potongan promo.
+    private static final int VERSI = 6;
+    
+    private SnapshotDomain() {
+    }
+    
+    // Diambil tanpa menghentikan pesanan masuk. Posisi log dicatat sebelum state dibaca, jadi
+    // perubahan yang terjadi selama penulisan diputar ulang dari log saat snapshot dimuat.
+    static void tulis(DomainStore store, Path berkas, long posisiLog) throws IOException {
+        Path sementara = berkas.resolveSibling(berkas.getFileName() + ".tmp");
+        try (FileChannel kanal = FileChannel.open(sementara, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedOutputStream buffer = new BufferedOutputStream(Channels.newOutputStream(kanal), 1 << 16);
+            CRC32 crc = new CRC32();
+            DataOutputStream keluar = new DataOutputStream(new CheckedOutputStream(buffer, crc));
+            keluar.writeInt(MAGIC);
+            keluar.writeInt(VERSI);
+            keluar.writeLong(posisiLog);
+            keluar.writeLong(store.getKatalog().getIdTerbesar());
+            keluar.writeLong(store.getPesanan().getIdTerbesar());
+            
+            List<MenuItem> menu = new ArrayList<>();
+            for (MenuItem item : store.getKatalog()) {
+                menu.add(item);
+            }
+            keluar.writeInt(menu.size());
+            for (MenuItem item : menu) {
+                KodekDomain.tulisMenu(keluar, item);
+            }
+            
+            Collection<User> pengguna = store.semuaPengguna();
+            keluar.writeInt(pengguna.size());
+            for (User user : pengguna) {
+                KodekDomain.tulisPengguna(keluar, user);
+            }
+            
+            // Pesanan selesai dan batal ikut disimpan karena statusnya masih bisa diubah
+            // (misalnya Selesai menjadi Dibatalkan) dan laporan penjualan harus bisa mengoreksinya.
+            List<Order> semuaPesanan = new ArrayList<>();
+            for (Order order : store.getPesanan()) {
+                semuaPesanan.add(order);
+            }
+            // Menu yang sudah dihapus tetapi masih dirujuk pesanan ikut disimpan terpisah.
+            Map<Long, MenuItem> menuTerhapus = new HashMap<>();
+            for (Order order : semuaPesanan) {
+                order.untukSetiapBaris((item, jumlah, harga) -> {
+                    if (store.getKatalog().cari(item.getNomorId()) != item) {
+                        menuTerhapus.put(item.getNomorId(), item);
+                    }
+                });
+            }
+            keluar.writeInt(menuTerhapus.size());
+            for (MenuItem item : menuTerhapus.values()) {
+                KodekDomain.tulisMenu(keluar, item);
+            }
+            keluar.writeInt(semuaPesanan.size());
+            for (Order order : semuaPesanan) {
+                KodekDomain.tulisPesanan(keluar, order);
+            }
+            
+            Map<String, int[]> pembuka = store.getBukuPoin().salinPembuka();
+            keluar.writeInt(pembuka.size());
+            for (Map.Entry<String, int[]> e : pembuka.entrySet()) {
+                keluar.writeUTF(e.getKey());
+                keluar.writeInt(e.getValue()[0]);
+                keluar.writeInt(e.getValue()[1]);
+            }
+            
+            keluar.flush();
+            new DataOutputStream(buffer).writeInt((int) crc.getValue());
+            buffer.flush();
+            kanal.force(true);
+        }
+        Files.move(sementara, berkas, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
     
-    public String getLevel() { return level; }
-    
-    private void updateLevel() {
-        if (poin < 100) {
-            level = "Bronze";
-        } else if (poin < 300) {
-            level = "Silver";
-        } else if (poin < 500) {
-            level = "Gold";
-        } else {
-            level = "Platinum";
+    // Memuat snapshot ke store kosong dan mengembalikan posisi log tempat replay dilanjutkan.
+    static long muat(DomainStore store, Path berkas) throws IOException {
+        byte[] isi = Files.readAllBytes(berkas);
+        if (isi.length < 4) {
+            throw new IOException("Snapshot rusak: berkas terlalu pendek!");
         }
-    }
-    
-    @Override
-    public String getInfo() {
-        return String.format("%s | Telepon: %s | Poin: %d | Level: %s", 
-                super.getInfo(), nomorTelepon, poin, level);
-    }
-    
-    public double hitungDiskon() {
-        switch (level) {
-            case "Bronze": return 0.0;
-            case "Silver": return 0.05;
-            case "Gold": return 0.1;
-            case "Platinum": return 0.15;
-            default: return 0.0;
+        CRC32 crc = new CRC32();
+        crc.update(isi, 0, isi.length - 4);
+        DataInputStream masuk = new DataInputStream(new ByteArrayInputStream(isi));
+        if (masuk.readInt() != MAGIC) {
+            throw new IOException("Berkas bukan snapshot RestaurantEase!");
+        }
+        int versi = masuk.readInt();
+        if (versi < 1 || versi > VERSI) {
+            throw new IOException("Versi snapshot tidak didukung: " + versi);
+        }
+        if (ByteBuffer.wrap(isi, isi.length - 4, 4).getInt() != (int) crc.getValue()) {
+            throw new IOException("Snapshot rusak: checksum tidak cocok!");
+        }
+        long posisiLog = masuk.readLong();
+        store.getKatalog().catatIdTerbesar(masuk.readLong());
+        store.getPesanan().catatIdTerbesar(masuk.readLong());
+        
+        int jumlahMenu = masuk.readInt();
+        for (int i = 0; i < jumlahMenu; i++) {
+            store.getKatalog().tambah(KodekDomain.bacaMenu(masuk, store.getKatalog(), versi < 3));
+        }
+        
+        int jumlahPengguna = masuk.readInt();
+        for (int i = 0; i < jumlahPengguna; i++) {
+            store.daftarkanPengguna(KodekDomain.bacaPengguna(masuk));
+        }
+        
+        MenuCatalog katalogTerhapus = new MenuCatalog();
+        Map<Long, MenuItem> menuTerhapus = new HashMap<>();
+        int jumlahTerhapus = masuk.readInt();
+        for (int i = 0; i < jumlahTerhapus; i++) {
+            MenuItem item = KodekDomain.bacaMenu(masuk, katalogTerhapus, versi < 3);
+            menuTerhapus.put(item.getNomorId(), item);
+        }
+        int jumlahPesanan = masuk.readInt();
+        for (int i = 0; i < jumlahPesanan; i++) {
+            Order order = KodekDomain.bacaPesanan(masuk, id -> {
+                MenuItem item = store.getKatalog().cari(id);
+                return item != null ? item : menuTerhapus.get(id);
+            }, versi >= 4, versi >= 6);
+            store.getPesanan().tambah(order);
+        }
+        if (versi >= 5) {
+            int jumlahPembuka = masuk.readInt();
+            for (int i = 0; i < jumlahPembuka; i++) {
+                store.pulihkanPembukaPoin(masuk.readUTF(), masuk.readInt(), masuk.readInt());
+            }
+        } else if (versi < 2) {
+            // Pesanan selesai tidak ikut di versi 1, jadi saldo tersimpan tidak bisa diturunkan ulang.
+            for (User user : store.semuaPengguna()) {
+                if (user instanceof Pelanggan) {
+                    store.pulihkanSaldoPoinLama(user.getUsername(), ((Pelanggan) user).getPoin());
+                }
+            }
         }
+        return posisiLog;
     }
 }
 
 public class RestaurantEase {
-    private static ArrayList<MenuItem> menuItems = new ArrayList<>();
-    private static ArrayList<Order> orders = new ArrayList<>();
-    private static Map<String, User> users = new HashMap<>();
-    private static User currentUser = null;
+    private static final DomainStore store = new DomainStore();
+    private static final MenuCatalog menuItems = store.getKatalog();
+    private static final OrderStore orders = store.getPesanan();
+    private static final PapanMenu papanMenu = new PapanMenu(menuItems);
+    // Sesi konsol ini di tabel sesi bersama; diperiksa ulang setiap kembali ke menu utama.
+    private static Sesi sesiKonsol = null;
     private static Scanner scanner = new Scanner(System.in);
+    private static final int UKURAN_HALAMAN = 10;
+    private static final long INTERVAL_SNAPSHOT_MENIT = 5;
+    private static final DateTimeFormatter FORMAT_TANGGAL = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static Path berkasEksporKatalog = null;
 
-    public static void main(String[] args) {
-        initSampleData();
+    public static void main(String[] args) throws IOException {
+        Path berkasWal = null;
+        Path berkasSnapshot = null;
+        int nomorNode = -1;
+        for (int i = 0; i < args.length; i++) {
+            boolean adaBerkas = i + 1 < args.length && !args[i + 1].startsWith("--");
+            if (args[i].equals("--wal")) {
+                berkasWal = Paths.get(adaBerkas ? args[i + 1] : "restaurantease.wal");
+            } else if (args[i].equals("--snapshot")) {
+                berkasSnapshot = Paths.get(adaBerkas ? args[i + 1] : "restaurantease.snap");
+            } else if (args[i].equals("--ekspor-katalog")) {
+                berkasEksporKatalog = Paths.get(adaBerkas ? args[i + 1] : "restaurantease.katalog");
+            } else if (args[i].equals("--promo")) {
+                store.setPromo(Promo.baca(Paths.get(adaBerkas ? args[i + 1] : "restaurantease.promo")));
+            } else if (args[i].equals("--katalog-bersama")) {
+                // Mode terminal: menu dibaca dari berkas katalog yang diekspor proses utama.
+                store.setKatalogBersama(KatalogTerpeta.buka(Paths.get(adaBerkas ? args[i + 1] : "restaurantease.katalog")));
+            } else if (args[i].equals("--node") && adaBerkas) {
+                // Penerapan multi-node: ID pesanan dibentuk dari waktu dan nomor node, tidak perlu koordinasi.
+                nomorNode = Integer.parseInt(args[i + 1]);
+            }
+        }
+        
+        boolean adaData = false;
+        long posisiLog = 0;
+        if (berkasSnapshot != null && Files.exists(berkasSnapshot)) {
+            long mulai = System.nanoTime();
+            posisiLog = SnapshotDomain.muat(store, berkasSnapshot);
+            adaData = true;
+            System.out.printf("Snapshot dimuat dalam %.1f ms%n", (System.nanoTime() - mulai) / 1e6);
+        }
+        WriteAheadLog wal = null;
+        if (berkasWal != null) {
+            wal = WriteAheadLog.buka(berkasWal, store, posisiLog);
+            adaData = adaData || !wal.isKosong();
+            store.setPendengar(wal);
+        }
+        // ID terbesar hasil pemulihan sudah mencakup batas blok terakhir yang dicadangkan.
+        // Menu tetap berurutan karena indeks padat MenuCatalog butuh ID yang rapat.
+        MenuItem.setGeneratorId(new SequenceIdGenerator(menuItems.getIdTerbesar() + 1, 64, store::cadangkanBlokMenu));
+        Order.setGeneratorId(nomorNode >= 0 ? new SnowflakeIdGenerator(nomorNode)
+                : new SequenceIdGenerator(orders.getIdTerbesar() + 1, 64, store::cadangkanBlokPesanan));
+        if (adaData) {
+            store.hashUlangKredensialLama();
+        } else {
+            initSampleData();
+            store.sinkron();
+        }
+        eksporKatalog();
+        
+        ScheduledExecutorService penjadwalSnapshot = null;
+        if (berkasSnapshot != null) {
+            Path berkas = berkasSnapshot;
+            WriteAheadLog log = wal;
+            penjadwalSnapshot = Executors.newSingleThreadScheduledExecutor(tugas -> {
+                Thread thread = new Thread(tugas, "snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            penjadwalSnapshot.scheduleWithFixedDelay(() -> ambilSnapshot(berkas, log),
+                    INTERVAL_SNAPSHOT_MENIT, INTERVAL_SNAPSHOT_MENIT, TimeUnit.MINUTES);
+        }
+        
+        HttpApi httpApi = null;
+        PosLineServer posServer = null;
+        for (int i = 0; i < args.length; i++) {
+            boolean adaPort = i + 1 < args.length && !args[i + 1].startsWith("--");
+            if (args[i].equals("--wal") || args[i].equals("--snapshot")
+                    || args[i].equals("--ekspor-katalog") || args[i].equals("--katalog-bersama")
+                    || args[i].equals("--promo") || args[i].equals("--node")) {
+                i += adaPort ? 1 : 0;
+            } else if (args[i].equals("--http")) {
+                httpApi = new HttpApi(store, adaPort ? Integer.parseInt(args[++i]) : 8080);
+                httpApi.mulai();
+                System.out.println("HTTP API berjalan di port " + httpApi.getPort());
+            } else if (args[i].equals("--pos")) {
+                posServer = new PosLineServer(store, adaPort ? Integer.parseInt(args[++i]) : 9090);
+                Thread threadPos = new Thread(posServer, "pos-line-server");
+                threadPos.setDaemon(true);
+                threadPos.start();
+                System.out.println("Server POS berjalan di port " + posServer.getPort());
+            }
+        }
         
         boolean isRunning = true;
         while (isRunning) {
-            if (currentUser == null) {
+            if (sesiKonsol != null && store.getSesi().cari(sesiKonsol.getToken()) == null) {
+                sesiKonsol = null;
+                System.out.println("\nSesi Anda telah berakhir, silakan login kembali.");
+            }
+            IOException galatPos = posServer != null ? posServer.ambilGalat() : null;
+            if (galatPos != null) {
+                System.out.println("\nServer POS berhenti: " + galatPos.getMessage());
+            }
+            if (sesiKonsol == null) {
                 tampilkanMenuLogin();
                 int pilihan = getIntInput("Pilih menu: ");
                 
@@ -460,7 +5655,7 @@ public class RestaurantEase {
                     default:
                         System.out.println("Pilihan tidak valid!");
                 }
-            } else if (currentUser.getRole().equals("admin")) {
+            } else if (sesiKonsol.getRole().equals("admin")) {
                 tampilkanMenuAdmin();
                 int pilihan = getIntInput("Pilih menu: ");
                 
@@ -475,6 +5670,9 @@ public class RestaurantEase {
                         kelolaUser();
                         break;
                     case 4:
+                        laporanPenjualan();
+                        break;
+                    case 5:
                         logout();
                         break;
                     default:
@@ -489,12 +5687,15 @@ public class RestaurantEase {
                         lihatSemuaMenu();
                         break;
                     case 2:
-                        kelolaPesanan();
+                        filterMenu();
                         break;
                     case 3:
-                        lihatProfilPelanggan();
+                        kelolaPesanan();
                         break;
                     case 4:
+                        lihatProfilPelanggan();
+                        break;
+                    case 5:
                         logout();
                         break;
                     default:
@@ -503,21 +5704,67 @@ public class RestaurantEase {
             }
         }
         scanner.close();
+        if (httpApi != null) {
+            httpApi.berhenti();
+        }
+        if (posServer != null) {
+            posServer.berhenti();
+        }
+        eksporKatalog();
+        if (penjadwalSnapshot != null) {
+            penjadwalSnapshot.shutdownNow();
+            ambilSnapshot(berkasSnapshot, wal);
+        }
+        if (wal != null) {
+            wal.close();
+        }
+    }
+    
+    private static void eksporKatalog() {
+        if (berkasEksporKatalog == null) {
+            return;
+        }
+        try {
+            KatalogTerpeta.tulis(menuItems, berkasEksporKatalog);
+        } catch (IOException e) {
+            System.out.println("Gagal mengekspor katalog: " + e.getMessage());
+        }
+    }
+    
+    private static synchronized void ambilSnapshot(Path berkas, WriteAheadLog wal) {
+        try {
+            long posisiLog = wal == null ? 0 : wal.sinkronSampaiAkhir();
+            SnapshotDomain.tulis(store, berkas, posisiLog);
+            if (wal != null) {
+                wal.pensiunkanSebelum(posisiLog);
+            }
+        } catch (IOException | IllegalStateException e) {
+            System.out.println("Gagal menyimpan snapshot: " + e.getMessage());
+        }
     }
 
     private static void initSampleData() {
-        menuItems.add(new KopiItem("Espresso", 18000, "Arabica", "Medium"));
-        menuItems.add(new KopiItem("Cappuccino", 25000, "Blend", "Medium-Dark"));
-        menuItems.add(new KopiItem("Latte", 23000, "Arabica", "Light"));
-        menuItems.add(new KopiItem("Americano", 20000, "Robusta", "Dark"));
-        menuItems.add(new MakananItem("Croissant", 15000, false, "Tanpa Topping"));
-        menuItems.add(new MakananItem("Cheesecake", 28000, true, "Buah"));
-        menuItems.add(new MenuItem("Air Mineral", "Minuman", 8000));
-        menuItems.add(new MinumanItem("Kopi", 10000, true, 3));
-        menuItems.add(new MinumanItem("Kopi Susu", 15000, false, 2));
+        if (store.getKatalogBersama() == null) {
+            initSampleMenu();
+        }
     
-        users.put("admin", new Admin("admin", "admin123", "Administrator", "Management", 3));
-        users.put("pelanggan", new Pelanggan("pelanggan", "pelanggan123", "Pelanggan Umum", "081234567890"));
+        // Kedua password di-hash bersamaan di pool verifikator.
+        CompletableFuture<Kredensial> kredensialAdmin = store.buatKredensialAsync("admin123");
+        CompletableFuture<Kredensial> kredensialPelanggan = store.buatKredensialAsync("pelanggan123");
+        store.daftarkanPengguna(new Admin("admin", kredensialAdmin.join(), "Administrator", "Management", 3));
+        store.daftarkanPengguna(new Pelanggan("pelanggan", kredensialPelanggan.join(), "Pelanggan Umum", "081234567890"));
+    }
+    
+    private static void initSampleMenu() {
+        store.tambahMenu(new KopiItem("Espresso", 18000, "Arabica", "Medium"));
+        store.tambahMenu(new KopiItem("Cappuccino", 25000, "Blend", "Medium-Dark"));
+        store.tambahMenu(new KopiItem("Latte", 23000, "Arabica", "Light"));
+        store.tambahMenu(new KopiItem("Americano", 20000, "Robusta", "Dark"));
+        store.tambahMenu(new MakananItem("Croissant", 15000, false, "Tanpa Topping"));
+        store.tambahMenu(new MakananItem("Cheesecake", 28000, true, "Buah"));
+        store.tambahMenu(new MenuItem("Air Mineral", "Minuman", 8000));
+        store.tambahMenu(new MinumanItem("Kopi", 10000, true, 3));
+        store.tambahMenu(new MinumanItem("Kopi Susu", 15000, false, 2));
     }
     
     private static void tampilkanMenuLogin() {
@@ -534,9 +5781,15 @@ public class RestaurantEase {
         System.out.print("Password: ");
         String password = scanner.nextLine();
         
-        User user = users.get(username);
-        if (user != null && user.authenticate(password)) {
-            currentUser = user;
+        User user;
+        try {
+            user = store.login(username, password);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (user != null) {
+            sesiKonsol = store.getSesi().buat(user);
             System.out.println("Login berhasil! Selamat datang, " + user.getNama() + "!");
         } else {
             System.out.println("Username atau password salah!");
@@ -548,7 +5801,7 @@ public class RestaurantEase {
         System.out.print("Username: ");
         String username = scanner.nextLine();
         
-        if (users.containsKey(username)) {
+        if (store.penggunaTerdaftar(username)) {
             System.out.println("Username sudah digunakan!");
             return;
         }
@@ -560,13 +5813,27 @@ public class RestaurantEase {
         System.out.print("Nomor Telepon: ");
         String nomorTelepon = scanner.nextLine();
         
-        User newUser = new Pelanggan(username, password, nama, nomorTelepon);
-        users.put(username, newUser);
+        User newUser;
+        try {
+            newUser = new Pelanggan(username, store.buatKredensial(password), nama, nomorTelepon);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (!store.daftarkanPengguna(newUser)) {
+            System.out.println("Username sudah digunakan!");
+            return;
+        }
         System.out.println("Registrasi berhasil! Silakan login.");
     }
     
+    private static User penggunaAktif() {
+        return sesiKonsol.getUser();
+    }
+    
     private static void logout() {
-        currentUser = null;
+        store.getSesi().akhiri(sesiKonsol.getToken());
+        sesiKonsol = null;
         System.out.println("Logout berhasil!");
     }
     
@@ -575,15 +5842,17 @@ public class RestaurantEase {
         System.out.println("1. Kelola Menu");
         System.out.println("2. Kelola Pesanan");
         System.out.println("3. Kelola User");
-        System.out.println("4. Logout");
+        System.out.println("4. Laporan Penjualan");
+        System.out.println("5. Logout");
     }
     
     private static void tampilkanMenuPelanggan() {
         System.out.println("\n===== MENU PELANGGAN =====");
         System.out.println("1. Lihat Menu");
-        System.out.println("2. Pesanan");
-        System.out.println("3. Lihat Profil");
-        System.out.println("4. Logout");
+        System.out.println("2. Filter Menu");
+        System.out.println("3. Pesanan");
+        System.out.println("4. Lihat Profil");
+        System.out.println("5. Logout");
     }
     
     private static void adminManagePesanan() {
@@ -592,7 +5861,8 @@ public class RestaurantEase {
             System.out.println("\n===== KELOLA PESANAN (ADMIN) =====");
             System.out.println("1. Lihat Semua Pesanan");
             System.out.println("2. Ubah Status Pesanan");
-            System.out.println("3. Kembali ke Menu Admin");
+            System.out.println("3. Lihat Antrean Dapur");
+            System.out.println("4. Kembali ke Menu Admin");
             
             int pilihan = getIntInput("Pilih menu: ");
             
@@ -604,6 +5874,74 @@ public class RestaurantEase {
                     ubahStatusPesanan();
                     break;
                 case 3:
+                    lihatAntreanDapur();
+                    break;
+                case 4:
+                    kembali = true;
+                    break;
+                default:
+                    System.out.println("Pilihan tidak valid!");
+            }
+        }
+    }
+
+    private static void laporanPenjualan() {
+        if (!((Admin) penggunaAktif()).bisaAksesLaporan()) {
+            System.out.println("Anda tidak memiliki akses ke laporan penjualan!");
+            return;
+        }
+        
+        boolean kembali = false;
+        while (!kembali) {
+            System.out.println("\n===== LAPORAN PENJUALAN =====");
+            System.out.println("1. Laporan Harian");
+            System.out.println("2. Laporan Mingguan");
+            System.out.println("3. Pendapatan per Kategori (Arsip)");
+            System.out.println("4. Kembali ke Menu Admin");
+            
+            int pilihan = getIntInput("Pilih menu: ");
+            
+            switch (pilihan) {
+                case 1: {
+                    LocalDate tanggal = getTanggalInput();
+                    if (tanggal == null) {
+                        break;
+                    }
+                    LaporanPenjualan.Agregat harian = store.getLaporan().harian(tanggal);
+                    System.out.println("\n===== LAPORAN HARIAN " + tanggal.format(FORMAT_TANGGAL) + " =====");
+                    tampilkanAgregat(harian);
+                    System.out.println(String.format("\n%-10s | %-8s | %s", "Kategori", "Item", "Pendapatan"));
+                    System.out.println("----------------------------------------");
+                    for (Map.Entry<String, LaporanPenjualan.Agregat> entri
+                            : store.getLaporan().harianPerKategori(tanggal).entrySet()) {
+                        System.out.println(String.format("%-10s | %-8d | %s", entri.getKey(),
+                                entri.getValue().getJumlahItem(), Rupiah.format(entri.getValue().getPendapatan())));
+                    }
+                    break;
+                }
+                case 2: {
+                    LocalDate tanggal = getTanggalInput();
+                    if (tanggal == null) {
+                        break;
+                    }
+                    LocalDate senin = tanggal.minusDays(tanggal.getDayOfWeek().getValue() - 1);
+                    System.out.println("\n===== LAPORAN MINGGUAN " + senin.format(FORMAT_TANGGAL)
+                            + " s/d " + senin.plusDays(6).format(FORMAT_TANGGAL) + " =====");
+                    tampilkanAgregat(store.getLaporan().mingguan(tanggal));
+                    System.out.println(String.format("\n%-10s | %-8s | %-8s | %s", "Tanggal", "Pesanan", "Item", "Pendapatan"));
+                    System.out.println("----------------------------------------------------");
+                    for (int i = 0; i < 7; i++) {
+                        LaporanPenjualan.Agregat harian = store.getLaporan().harian(senin.plusDays(i));
+                        System.out.println(String.format("%-10s | %-8d | %-8d | %s",
+                                senin.plusDays(i).format(FORMAT_TANGGAL), harian.getJumlahPesanan(),
+                                harian.getJumlahItem(), Rupiah.format(harian.getPendapatan())));
+                    }
+                    break;
+                }
+                case 3:
+                    laporanArsip();
+                    break;
+                case 4:
                     kembali = true;
                     break;
                 default:
@@ -611,6 +5949,53 @@ public class RestaurantEase {
             }
         }
     }
+    
+    private static void laporanArsip() {
+        int jumlahHari = getIntInput("Jumlah hari terakhir (contoh: 90): ");
+        if (jumlahHari <= 0) {
+            System.out.println("Jumlah hari harus lebih dari 0!");
+            return;
+        }
+        LocalDateTime sampai = LocalDate.now().plusDays(1).atStartOfDay();
+        LocalDateTime dari = sampai.minusDays(jumlahHari);
+        
+        long mulai = System.nanoTime();
+        Order[] arsip = orders.salinArsip();
+        LaporanArsip.Hasil hasil = LaporanArsip.pendapatanPerKategori(arsip, dari, sampai);
+        long durasi = System.nanoTime() - mulai;
+        
+        System.out.println("\n===== PENDAPATAN PER KATEGORI " + jumlahHari + " HARI TERAKHIR =====");
+        System.out.println(String.format("%-10s | %-8s | %s", "Kategori", "Item", "Pendapatan"));
+        System.out.println("----------------------------------------");
+        for (int i = 0; i < hasil.jumlahKategori(); i++) {
+            System.out.println(String.format("%-10s | %-8d | %s", hasil.getKategori(i),
+                    hasil.getJumlahItem(i), Rupiah.format(hasil.getPendapatan(i))));
+        }
+        System.out.println("----------------------------------------");
+        System.out.println("Pesanan selesai: " + hasil.getJumlahPesanan());
+        System.out.println("Total pendapatan: " + Rupiah.format(hasil.getTotalPendapatan()));
+        System.out.println(String.format("(%d pesanan dipindai dalam %.1f ms)", arsip.length, durasi / 1e6));
+    }
+    
+    private static void tampilkanAgregat(LaporanPenjualan.Agregat agregat) {
+        System.out.println("Pesanan selesai: " + agregat.getJumlahPesanan());
+        System.out.println("Item terjual: " + agregat.getJumlahItem());
+        System.out.println("Pendapatan: " + Rupiah.format(agregat.getPendapatan()));
+    }
+    
+    private static LocalDate getTanggalInput() {
+        System.out.print("Tanggal (dd-MM-yyyy, kosongkan untuk hari ini): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(input, FORMAT_TANGGAL);
+        } catch (DateTimeParseException e) {
+            System.out.println("Format tanggal tidak valid!");
+            return null;
+        }
+    }
 
     private static int getIntInput(String prompt) {
         int input = 0;
@@ -629,17 +6014,17 @@ public class RestaurantEase {
         return input;
     }
 
-    private static double getDoubleInput(String prompt) {
-        double input = 0;
+    private static long getHargaInput(String prompt) {
+        long input = 0;
         boolean valid = false;
         
         while (!valid) {
             System.out.print(prompt);
             try {
-                input = Double.parseDouble(scanner.nextLine());
+                input = Rupiah.parse(scanner.nextLine());
                 valid = true;
-            } catch (NumberFormatException e) {
-                System.out.println("Input tidak valid! Masukkan angka.");
+            } catch (IllegalArgumentException e) {
+                System.out.println("Input tidak valid! " + e.getMessage());
             }
         }
         
@@ -654,7 +6039,8 @@ public class RestaurantEase {
             System.out.println("2. Tambah Menu Baru");
             System.out.println("3. Edit Menu");
             System.out.println("4. Hapus Menu");
-            System.out.println("5. Kembali ke Menu Admin");
+            System.out.println("5. Cari Menu");
+            System.out.println("6. Kembali ke Menu Admin");
             
             int pilihan = getIntInput("Pilih menu: ");
             
@@ -672,38 +6058,141 @@ public class RestaurantEase {
                     hapusMenu();
                     break;
                 case 5:
+                    cariMenu();
+                    break;
+                case 6:
                     kembali = true;
                     break;
                 default:
                     System.out.println("Pilihan tidak valid!");
             }
         }
+        eksporKatalog();
     }
 
     private static void lihatSemuaMenu() {
         System.out.println("\n===== DAFTAR MENU =====");
         
+        KatalogTerpeta katalogBersama = store.getKatalogBersama();
+        if (katalogBersama != null) {
+            lihatKatalogBersama(katalogBersama);
+            return;
+        }
+        
         if (menuItems.isEmpty()) {
             System.out.println("Tidak ada menu tersedia.");
             return;
         }
         
-        System.out.println(String.format("%-10s | %-20s | %-10s | %-10s | %s", 
-                "ID", "Nama", "Kategori", "Harga", "Status"));
-        System.out.println("------------------------------------------------------------------------------------------------------------------");
+        long kursor = 0;
+        while (true) {
+            PapanMenu.Halaman halaman = papanMenu.halaman(kursor, UKURAN_HALAMAN);
+            System.out.print(halaman.getTeks());
+            if (!halaman.adaBerikutnya() || !lanjutHalaman()) {
+                break;
+            }
+            kursor = halaman.getKursorBerikutnya();
+        }
         
-        for (MenuItem item : menuItems) {
-            System.out.println(item);
-            System.out.println("Deskripsi: " + item.getDeskripsi());
-            System.out.println("--------------------------------------------------------------------------------------------------------------");
+        if (sesiKonsol != null && sesiKonsol.getRole().equals("pelanggan")) {
+            System.out.print("\nTekan Enter untuk kembali...");
+            scanner.nextLine();
+        }
+    }
+
+    private static void lihatKatalogBersama(KatalogTerpeta katalog) {
+        if (katalog.ukuran() == 0) {
+            System.out.println("Tidak ada menu tersedia.");
+            return;
+        }
+        
+        KatalogTerpeta.Tampilan item = katalog.tampilan();
+        StringBuilder halaman = new StringBuilder();
+        for (int awal = 0; awal < katalog.ukuran(); awal += UKURAN_HALAMAN) {
+            if (awal > 0 && !lanjutHalaman()) {
+                break;
+            }
+            halaman.setLength(0);
+            halaman.append(PapanMenu.JUDUL);
+            for (int i = awal; i < Math.min(awal + UKURAN_HALAMAN, katalog.ukuran()); i++) {
+                item.pindahKe(i);
+                PapanMenu.tulisMenu(halaman, item.toString(), item.getDeskripsi());
+            }
+            System.out.print(halaman);
         }
         
-        if (currentUser != null && currentUser.getRole().equals("pelanggan")) {
+        if (sesiKonsol != null && sesiKonsol.getRole().equals("pelanggan")) {
             System.out.print("\nTekan Enter untuk kembali...");
             scanner.nextLine();
         }
     }
 
+    private static void filterMenu() {
+        System.out.println("\n===== FILTER MENU =====");
+        System.out.println("1. Berdasarkan Kategori");
+        System.out.println("2. Makanan Vegetarian");
+        System.out.println("3. Minuman Dingin");
+        System.out.println("4. Kopi Berdasarkan Tingkat Roasting");
+        
+        int pilihan = getIntInput("Pilih filter: ");
+        MenuCatalog.Kueri kueri = menuItems.kueri();
+        
+        switch (pilihan) {
+            case 1:
+                System.out.print("Kategori (Kopi/Makanan/Minuman): ");
+                kueri.kategori(scanner.nextLine());
+                break;
+            case 2:
+                kueri.kategori("Makanan").vegetarian();
+                break;
+            case 3:
+                kueri.kategori("Minuman").dingin();
+                break;
+            case 4:
+                System.out.print("Tingkat roasting (Light/Medium/Dark): ");
+                kueri.kategori("Kopi").roasting(scanner.nextLine());
+                break;
+            default:
+                System.out.println("Pilihan tidak valid!");
+                return;
+        }
+        
+        System.out.print("Hanya tampilkan yang tersedia? (y/n): ");
+        if (scanner.nextLine().equalsIgnoreCase("y")) {
+            kueri.tersedia();
+        }
+        
+        List<MenuItem> hasil = kueri.hasil();
+        if (hasil.isEmpty()) {
+            System.out.println("Tidak ada menu yang sesuai filter.");
+        } else {
+            for (MenuItem item : hasil) {
+                System.out.println(item.teksTampilan());
+                System.out.println("Deskripsi: " + item.deskripsiTampilan());
+                System.out.println("--------------------------------------------------------------------------------------------------------------");
+            }
+        }
+        
+        System.out.print("\nTekan Enter untuk kembali...");
+        scanner.nextLine();
+    }
+
+    private static void cariMenu() {
+        System.out.println("\n===== CARI MENU =====");
+        System.out.print("Kata kunci: ");
+        String kataKunci = scanner.nextLine();
+        
+        List<MenuItem> hasil = menuItems.cariNama(kataKunci, 10);
+        if (hasil.isEmpty()) {
+            System.out.println("Tidak ada menu yang cocok dengan \"" + kataKunci + "\".");
+            return;
+        }
+        
+        for (MenuItem item : hasil) {
+            System.out.println(item);
+        }
+    }
+
     private static void tambahMenu() {
         System.out.println("\n===== TAMBAH MENU BARU =====");
         System.out.println("Pilih jenis menu:");
@@ -738,7 +6227,7 @@ public class RestaurantEase {
         System.out.print("Nama kopi: ");
         String nama = scanner.nextLine();
         
-        double harga = getDoubleInput("Harga (Rp): ");
+        long harga = getHargaInput("Harga (Rp): ");
         
         System.out.print("Jenis kopi (Arabica/Robusta/Blend): ");
         String jenisKopi = scanner.nextLine();
@@ -747,7 +6236,7 @@ public class RestaurantEase {
         String tingkatRoasting = scanner.nextLine();
         
         MenuItem newItem = new KopiItem(nama, harga, jenisKopi, tingkatRoasting);
-        menuItems.add(newItem);
+        store.tambahMenu(newItem);
         
         System.out.println("Menu kopi berhasil ditambahkan!");
     }
@@ -758,7 +6247,7 @@ public class RestaurantEase {
         System.out.print("Nama makanan: ");
         String nama = scanner.nextLine();
         
-        double harga = getDoubleInput("Harga (Rp): ");
+        long harga = getHargaInput("Harga (Rp): ");
         
         System.out.print("Vegetarian? (y/n): ");
         boolean isVegetarian = scanner.nextLine().equalsIgnoreCase("y");
@@ -768,7 +6257,7 @@ public class RestaurantEase {
         String topping = scanner.nextLine();
         
         MenuItem newItem = new MakananItem(nama, harga, isVegetarian, topping);
-        menuItems.add(newItem);
+        store.tambahMenu(newItem);
         
         System.out.println("Menu makanan berhasil ditambahkan!");
     }
@@ -782,10 +6271,10 @@ public class RestaurantEase {
         System.out.print("Kategori (Kopi/Makanan/Minuman): ");
         String kategori = scanner.nextLine();
         
-        double harga = getDoubleInput("Harga (Rp): ");
+        long harga = getHargaInput("Harga (Rp): ");
         
         MenuItem newItem = new MenuItem(nama, kategori, harga);
-        menuItems.add(newItem);
+        store.tambahMenu(newItem);
         
         System.out.println("Menu regular berhasil ditambahkan!");
     }
@@ -796,7 +6285,7 @@ public class RestaurantEase {
         System.out.print("Nama minuman: ");
         String nama = scanner.nextLine();
         
-        double harga = getDoubleInput("Harga (Rp): ");
+        long harga = getHargaInput("Harga (Rp): ");
         
         System.out.print("Dingin? (y/n): ");
         boolean isDingin = scanner.nextLine().equalsIgnoreCase("y");
@@ -804,7 +6293,7 @@ public class RestaurantEase {
         int levelManis = getIntInput("Level kemanisan (0-5): ");
         
         MenuItem newItem = new MinumanItem(nama, harga, isDingin, levelManis);
-        menuItems.add(newItem);
+        store.tambahMenu(newItem);
         
         System.out.println("Menu minuman spesial berhasil ditambahkan!");
     }
@@ -820,13 +6309,7 @@ public class RestaurantEase {
         System.out.print("Masukkan ID menu yang akan diedit: ");
         String id = scanner.nextLine();
         
-        MenuItem itemToEdit = null;
-        for (MenuItem item : menuItems) {
-            if (item.getId().equals(id)) {
-                itemToEdit = item;
-                break;
-            }
-        }
+        MenuItem itemToEdit = menuItems.cari(id);
         
         if (itemToEdit == null) {
             System.out.println("Menu dengan ID tersebut tidak ditemukan!");
@@ -856,7 +6339,7 @@ public class RestaurantEase {
         System.out.print("Ubah harga? (y/n): ");
         String ubahHarga = scanner.nextLine();
         if (ubahHarga.equalsIgnoreCase("y")) {
-            double newHarga = getDoubleInput("Harga baru (Rp): ");
+            long newHarga = getHargaInput("Harga baru (Rp): ");
             item.setHarga(newHarga);
         }
         
@@ -896,7 +6379,7 @@ public class RestaurantEase {
         System.out.print("Ubah harga? (y/n): ");
         String ubahHarga = scanner.nextLine();
         if (ubahHarga.equalsIgnoreCase("y")) {
-            double newHarga = getDoubleInput("Harga baru (Rp): ");
+            long newHarga = getHargaInput("Harga baru (Rp): ");
             item.setHarga(newHarga);
         }
         
@@ -933,7 +6416,7 @@ public class RestaurantEase {
         System.out.print("Ubah harga? (y/n): ");
         String ubahHarga = scanner.nextLine();
         if (ubahHarga.equalsIgnoreCase("y")) {
-            double newHarga = getDoubleInput("Harga baru (Rp): ");
+            long newHarga = getHargaInput("Harga baru (Rp): ");
             item.setHarga(newHarga);
         }
         
@@ -983,7 +6466,7 @@ public class RestaurantEase {
         System.out.print("Ubah harga? (y/n): ");
         String ubahHarga = scanner.nextLine();
         if (ubahHarga.equalsIgnoreCase("y")) {
-            double newHarga = getDoubleInput("Harga baru (Rp): ");
+            long newHarga = getHargaInput("Harga baru (Rp): ");
             item.setHarga(newHarga);
         }
         
@@ -1009,13 +6492,7 @@ public class RestaurantEase {
         System.out.print("Masukkan ID menu yang akan dihapus: ");
         String id = scanner.nextLine();
         
-        MenuItem itemToRemove = null;
-        for (MenuItem item : menuItems) {
-            if (item.getId().equals(id)) {
-                itemToRemove = item;
-                break;
-            }
-        }
+        MenuItem itemToRemove = menuItems.cari(id);
         
         if (itemToRemove == null) {
             System.out.println("Menu dengan ID tersebut tidak ditemukan!");
@@ -1027,7 +6504,7 @@ public class RestaurantEase {
         String konfirmasi = scanner.nextLine();
         
         if (konfirmasi.equalsIgnoreCase("y")) {
-            menuItems.remove(itemToRemove);
+            store.hapusMenu(itemToRemove);
             System.out.println("Menu berhasil dihapus!");
         } else {
             System.out.println("Penghapusan menu dibatalkan.");
@@ -1035,7 +6512,7 @@ public class RestaurantEase {
     }
 
     private static void kelolaUser() {
-        Admin adminUser = (Admin) currentUser;
+        Admin adminUser = (Admin) penggunaAktif();
         if (!adminUser.bisaManagePengguna()) {
             System.out.println("Anda tidak memiliki akses untuk mengelola pengguna!");
             return;
@@ -1072,15 +6549,32 @@ public class RestaurantEase {
     
     private static void lihatSemuaUser() {
         System.out.println("\n===== DAFTAR USER =====");
+        try {
+            store.getBukuPoin().tunggu();
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
         
-        if (users.isEmpty()) {
+        StringBuilder halaman = new StringBuilder();
+        String kursor = null;
+        List<User> daftar = store.penggunaSetelah(null, UKURAN_HALAMAN + 1);
+        if (daftar.isEmpty()) {
             System.out.println("Tidak ada user terdaftar.");
             return;
         }
-        
-        for (User user : users.values()) {
-            System.out.println(user.getInfo());
-            System.out.println("---------------------------------------------------");
+        while (true) {
+            halaman.setLength(0);
+            for (int i = 0; i < daftar.size() && i < UKURAN_HALAMAN; i++) {
+                User user = daftar.get(i);
+                halaman.append(user.getInfo()).append('\n');
+                halaman.append("---------------------------------------------------\n");
+                kursor = user.getUsername();
+            }
+            System.out.print(halaman);
+            if (daftar.size() <= UKURAN_HALAMAN || !lanjutHalaman()) {
+                break;
+            }
+            daftar = store.penggunaSetelah(kursor, UKURAN_HALAMAN + 1);
         }
     }
     
@@ -1090,7 +6584,7 @@ public class RestaurantEase {
         System.out.print("Username: ");
         String username = scanner.nextLine();
         
-        if (users.containsKey(username)) {
+        if (store.penggunaTerdaftar(username)) {
             System.out.println("Username sudah digunakan!");
             return;
         }
@@ -1104,8 +6598,17 @@ public class RestaurantEase {
         
         int levelAkses = getIntInput("Level Akses (1-3): ");
         
-        User newAdmin = new Admin(username, password, nama, departemen, levelAkses);
-        users.put(username, newAdmin);
+        User newAdmin;
+        try {
+            newAdmin = new Admin(username, store.buatKredensial(password), nama, departemen, levelAkses);
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (!store.daftarkanPengguna(newAdmin)) {
+            System.out.println("Username sudah digunakan!");
+            return;
+        }
         
         System.out.println("Admin baru berhasil ditambahkan!");
     }
@@ -1117,22 +6620,23 @@ public class RestaurantEase {
         System.out.print("Masukkan username yang akan dihapus: ");
         String username = scanner.nextLine();
         
-        if (username.equals(currentUser.getUsername())) {
+        if (username.equals(penggunaAktif().getUsername())) {
             System.out.println("Anda tidak dapat menghapus akun Anda sendiri!");
             return;
         }
         
-        if (!users.containsKey(username)) {
+        User userToRemove = store.cariPengguna(username);
+        if (userToRemove == null) {
             System.out.println("User dengan username tersebut tidak ditemukan!");
             return;
         }
         
-        System.out.println("User yang akan dihapus: " + users.get(username).getInfo());
+        System.out.println("User yang akan dihapus: " + userToRemove.getInfo());
         System.out.print("Apakah Anda yakin ingin menghapus user ini? (y/n): ");
         String konfirmasi = scanner.nextLine();
         
         if (konfirmasi.equalsIgnoreCase("y")) {
-            users.remove(username);
+            store.hapusPengguna(username);
             System.out.println("User berhasil dihapus!");
         } else {
             System.out.println("Penghapusan user dibatalkan.");
@@ -1171,7 +6675,7 @@ public class RestaurantEase {
         System.out.print("Nomor Meja: ");
         String nomorMeja = scanner.nextLine();
         
-        Order pesananBaru = new Order(nomorMeja, currentUser.getNama());
+        Order pesananBaru = new Order(nomorMeja, penggunaAktif());
         
         boolean selesaiMemesan = false;
         while (!selesaiMemesan) {
@@ -1182,6 +6686,7 @@ public class RestaurantEase {
             System.out.println("3. Hapus Item dari Pesanan");
             System.out.println("4. Selesai dan Simpan Pesanan");
             System.out.println("5. Batal");
+            System.out.println("6. Cari Menu");
             
             int pilihan = getIntInput("Pilih menu: ");
             
@@ -1196,13 +6701,7 @@ public class RestaurantEase {
                     System.out.print("Masukkan ID menu yang ingin ditambahkan: ");
                     String menuId = scanner.nextLine();
                     
-                    MenuItem selectedItem = null;
-                    for (MenuItem item : menuItems) {
-                        if (item.getId().equals(menuId)) {
-                            selectedItem = item;
-                            break;
-                        }
-                    }
+                    MenuItem selectedItem = store.cariMenu(menuId);
                     
                     if (selectedItem == null) {
                         System.out.println("Menu dengan ID tersebut tidak ditemukan!");
@@ -1227,13 +6726,7 @@ public class RestaurantEase {
                     System.out.print("Masukkan ID menu yang ingin ditambahkan: ");
                     String menuId = scanner.nextLine();
                     
-                    MenuItem selectedItem = null;
-                    for (MenuItem item : menuItems) {
-                        if (item.getId().equals(menuId)) {
-                            selectedItem = item;
-                            break;
-                        }
-                    }
+                    MenuItem selectedItem = store.cariMenu(menuId);
                     
                     if (selectedItem == null) {
                         System.out.println("Menu dengan ID tersebut tidak ditemukan!");
@@ -1258,15 +6751,18 @@ public class RestaurantEase {
                     hapusItemDariPesanan(pesananBaru);
                     break;
                 case 4:
-                    if (pesananBaru.getItems().isEmpty()) {
+                    if (pesananBaru.getJumlahBaris() == 0) {
                         System.out.println("Pesanan kosong! Tambahkan item terlebih dahulu.");
                     } else {
-                        orders.add(pesananBaru);
+                        int poinDiperoleh = store.simpanPesanan(pesananBaru, penggunaAktif());
+                        store.sinkron();
                         System.out.println("Pesanan berhasil disimpan!");
+                        if (pesananBaru.getPotongan() > 0) {
+                            System.out.println("Potongan promo: " + Rupiah.format(pesananBaru.getPotongan())
+                                    + ", total bayar: " + Rupiah.format(pesananBaru.hitungTotalBayar()));
+                        }
                         
-                        if (currentUser instanceof Pelanggan) {
-                            int poinDiperoleh = (int) (pesananBaru.hitungTotal() / 10000);
-                            ((Pelanggan) currentUser).tambahPoin(poinDiperoleh);
+                        if (penggunaAktif() instanceof Pelanggan) {
                             System.out.println("Anda mendapatkan " + poinDiperoleh + " poin!");
                         }
                         
@@ -1277,47 +6773,17 @@ public class RestaurantEase {
                     System.out.println("Pembuatan pesanan dibatalkan.");
                     selesaiMemesan = true;
                     break;
+                case 6:
+                    cariMenu();
+                    break;
                 default:
                     System.out.println("Pilihan tidak valid!");
             }
         }
     }
     
-    private static void tambahItemKePesanan(Order pesanan) {
-        System.out.print("Masukkan ID menu yang ingin ditambahkan: ");
-        String menuId = scanner.nextLine();
-        
-        MenuItem selectedItem = null;
-        for (MenuItem item : menuItems) {
-            if (item.getId().equals(menuId)) {
-                selectedItem = item;
-                break;
-            }
-        }
-        
-        if (selectedItem == null) {
-            System.out.println("Menu dengan ID tersebut tidak ditemukan!");
-            return;
-        }
-        
-        if (!selectedItem.isTersedia()) {
-            System.out.println("Maaf, menu ini sedang tidak tersedia!");
-            return;
-        }
-        
-        int jumlah = getIntInput("Jumlah: ");
-        
-        if (jumlah <= 0) {
-            System.out.println("Jumlah harus lebih dari 0!");
-            return;
-        }
-        
-        pesanan.tambahItem(selectedItem, jumlah);
-        System.out.println(jumlah + "x " + selectedItem.getNama() + " berhasil ditambahkan ke pesanan!");
-    }
-    
     private static void hapusItemDariPesanan(Order pesanan) {
-        if (pesanan.getItems().isEmpty()) {
+        if (pesanan.getJumlahBaris() == 0) {
             System.out.println("Pesanan kosong!");
             return;
         }
@@ -1342,16 +6808,26 @@ public class RestaurantEase {
     private static void lihatPesananSaya() {
         System.out.println("\n===== PESANAN SAYA =====");
         
-        boolean adaPesanan = false;
-        for (Order order : orders) {
-            if (order.getNamaPelanggan().equals(currentUser.getNama())) {
-                System.out.println(order);
-                adaPesanan = true;
-            }
-        }
+        String kunciPelanggan = penggunaAktif().getUsername();
+        int jumlahPesanan = orders.jumlahPesananPelanggan(kunciPelanggan);
         
-        if (!adaPesanan) {
+        if (jumlahPesanan == 0) {
             System.out.println("Anda belum memiliki pesanan.");
+        } else {
+            List<Order> terbaru = orders.pesananTerbaru(kunciPelanggan);
+            for (Order order : terbaru) {
+                System.out.println(order);
+            }
+            
+            if (jumlahPesanan > terbaru.size()) {
+                System.out.print("Menampilkan " + terbaru.size() + " dari " + jumlahPesanan
+                        + " pesanan. Tampilkan semua? (y/n): ");
+                if (scanner.nextLine().equalsIgnoreCase("y")) {
+                    for (Order order : orders.pesananPelanggan(kunciPelanggan)) {
+                        System.out.println(order);
+                    }
+                }
+            }
         }
         
         System.out.print("\nTekan Enter untuk kembali...");
@@ -1366,40 +6842,85 @@ public class RestaurantEase {
             return;
         }
         
-        for (Order order : orders) {
-            System.out.println(order);
-            System.out.println("-----------------------------------------------------------------------");
+        PencetakStruk pencetak = PencetakStruk.untukThreadIni();
+        StringBuilder halaman = new StringBuilder();
+        int posisi = 0;
+        while (true) {
+            List<Order> daftar = orders.halamanDari(posisi, UKURAN_HALAMAN + 1);
+            halaman.setLength(0);
+            for (int i = 0; i < daftar.size() && i < UKURAN_HALAMAN; i++) {
+                halaman.append(pencetak.render(daftar.get(i))).append('\n');
+                halaman.append("-----------------------------------------------------------------------\n");
+            }
+            System.out.print(halaman);
+            posisi += UKURAN_HALAMAN;
+            if (daftar.size() <= UKURAN_HALAMAN || !lanjutHalaman()) {
+                break;
+            }
         }
     }
     
-    private static void ubahStatusPesanan() {
-        System.out.println("\n===== UBAH STATUS PESANAN =====");
+    // Dipanggil di antara halaman daftar panjang; false jika pengguna memilih berhenti.
+    private static boolean lanjutHalaman() {
+        System.out.print("Tekan Enter untuk halaman berikutnya, atau 'q' untuk berhenti: ");
+        return !scanner.nextLine().trim().equalsIgnoreCase("q");
+    }
+    
+    private static void lihatAntreanDapur() {
+        System.out.println("\n===== ANTREAN DAPUR =====");
         
-        if (orders.isEmpty()) {
-            System.out.println("Tidak ada pesanan.");
-            return;
+        StatusPesanan[] statusAktif = {StatusPesanan.BARU, StatusPesanan.DIPROSES};
+        for (StatusPesanan status : statusAktif) {
+            System.out.println("\n--- " + status.getLabel() + " (" + orders.jumlahDenganStatus(status) + ") ---");
+            for (Order order : orders.pesananDenganStatus(status)) {
+                System.out.println(order);
+            }
         }
-        
+    }
+    
+    private static void tampilkanRingkasanPesanan(int halaman, int jumlahHalaman) {
         System.out.println(String.format("%-5s | %-20s | %-15s | %-10s", 
                 "ID", "Pelanggan", "Meja", "Status"));
         System.out.println("-----------------------------------------------------");
         
-        for (Order order : orders) {
+        // Halaman 1 berisi pesanan terbaru.
+        int akhir = orders.ukuran() - (halaman - 1) * UKURAN_HALAMAN;
+        int awal = Math.max(0, akhir - UKURAN_HALAMAN);
+        List<Order> daftar = orders.halamanDari(awal, akhir - awal);
+        for (int i = daftar.size() - 1; i >= 0; i--) {
+            Order order = daftar.get(i);
             System.out.println(String.format("%-5s | %-20s | %-15s | %-10s", 
                     order.getId(), order.getNamaPelanggan(), order.getNomorMeja(), order.getStatus()));
         }
+        System.out.println("Halaman " + halaman + " dari " + jumlahHalaman);
+    }
+    
+    private static void ubahStatusPesanan() {
+        System.out.println("\n===== UBAH STATUS PESANAN =====");
         
-        System.out.print("\nMasukkan ID pesanan yang ingin diubah statusnya: ");
-        String orderId = scanner.nextLine();
+        if (orders.isEmpty()) {
+            System.out.println("Tidak ada pesanan.");
+            return;
+        }
         
-        Order selectedOrder = null;
-        for (Order order : orders) {
-            if (order.getId().equals(orderId)) {
-                selectedOrder = order;
+        int halaman = 1;
+        int jumlahHalaman = orders.jumlahHalaman(UKURAN_HALAMAN);
+        String orderId;
+        while (true) {
+            tampilkanRingkasanPesanan(halaman, jumlahHalaman);
+            System.out.print("\nMasukkan ID pesanan yang ingin diubah statusnya (n = halaman berikutnya, p = sebelumnya): ");
+            orderId = scanner.nextLine();
+            if (orderId.equalsIgnoreCase("n") && halaman < jumlahHalaman) {
+                halaman++;
+            } else if (orderId.equalsIgnoreCase("p") && halaman > 1) {
+                halaman--;
+            } else {
                 break;
             }
         }
         
+        Order selectedOrder = orders.cari(orderId);
+        
         if (selectedOrder == null) {
             System.out.println("Pesanan dengan ID tersebut tidak ditemukan!");
             return;
@@ -1414,32 +6935,39 @@ public class RestaurantEase {
         
         switch (pilihan) {
             case 1:
-                selectedOrder.setStatus("Diproses");
+                selectedOrder.setStatus(StatusPesanan.DIPROSES);
                 break;
             case 2:
-                selectedOrder.setStatus("Selesai");
+                selectedOrder.setStatus(StatusPesanan.SELESAI);
                 break;
             case 3:
-                selectedOrder.setStatus("Dibatalkan");
+                selectedOrder.setStatus(StatusPesanan.DIBATALKAN);
                 break;
             default:
                 System.out.println("Pilihan tidak valid!");
                 return;
         }
+        store.sinkron();
         
         System.out.println("Status pesanan berhasil diubah!");
     }
     
     private static void lihatProfilPelanggan() {
         System.out.println("\n===== PROFIL PELANGGAN =====");
-        Pelanggan pelanggan = (Pelanggan) currentUser;
+        Pelanggan pelanggan = (Pelanggan) penggunaAktif();
+        // Poin dibukukan di belakang; tunggu pesanan terakhir pelanggan ini ikut terhitung.
+        try {
+            store.getBukuPoin().tunggu();
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
         
         System.out.println("Nama: " + pelanggan.getNama());
         System.out.println("Username: " + pelanggan.getUsername());
         System.out.println("Nomor Telepon: " + pelanggan.getNomorTelepon());
         System.out.println("Poin: " + pelanggan.getPoin());
         System.out.println("Level: " + pelanggan.getLevel());
-        System.out.println("Diskon: " + (pelanggan.hitungDiskon() * 100) + "%");
+        System.out.println("Diskon: " + store.getTabelHarga().persenLevel(pelanggan) + "%");
         
         System.out.print("\nTekan Enter untuk kembali...");
         scanner.nextLine();
@@ -1449,8 +6977,12 @@ public class RestaurantEase {
         private boolean isDingin;
         private int levelKemanisan;
         
-        public MinumanItem(String nama, double harga, boolean isDingin, int levelKemanisan) {
-            super(nama, "Minuman", harga);
+        public MinumanItem(String nama, long harga, boolean isDingin, int levelKemanisan) {
+            this(idBaru(), nama, harga, isDingin, levelKemanisan);
+        }
+        
+        MinumanItem(long nomorId, String nama, long harga, boolean isDingin, int levelKemanisan) {
+            super(nomorId, nama, "Minuman", harga);
             this.isDingin = isDingin;
             setLevelKemanisan(levelKemanisan);
         }
@@ -1459,6 +6991,7 @@ public class RestaurantEase {
         
         public void setDingin(boolean isDingin) {
             this.isDingin = isDingin;
+            beritahuKatalog();
         }
         
         public int getLevelKemanisan() { return levelKemanisan; }
@@ -1468,18 +7001,17 @@ public class RestaurantEase {
                 throw new IllegalArgumentException("Level kemanisan harus antara 0-5!");
             }
             this.levelKemanisan = levelKemanisan;
+            beritahuKatalog();
         }
         
         @Override
         public String getDeskripsi() {
-            return String.format("%s (%s, Level Manis: %d/5)", 
-                    getNama(), isDingin ? "Dingin" : "Panas", levelKemanisan);
+            return TeksMenu.deskripsiMinuman(getNama(), isDingin, levelKemanisan);
         }
         
         @Override
         public String toString() {
-            return String.format("%s | %s | Level Manis: %d/5", 
-                    super.toString(), isDingin ? "Dingin" : "Panas", levelKemanisan);
+            return TeksMenu.minuman(super.toString(), isDingin, levelKemanisan);
         }
 
         @Override
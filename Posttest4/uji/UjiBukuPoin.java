@@ -0,0 +1,47 @@
+import java.time.Clock;
+
+// Uji entri buku poin yang gagal diterapkan: tunggu() harus melaporkannya, bukan diam-diam
+// melewatinya, dan entri itu dicoba lagi sampai berhasil.
+public class UjiBukuPoin {
+    private static volatile boolean rusak = true;
+
+    public static void main(String[] args) {
+        Pelanggan pelanggan = new Pelanggan("uji", "rahasia", "Pelanggan Uji", "0812");
+        BukuPoin buku = new BukuPoin(username -> {
+            if (rusak) {
+                throw new IllegalArgumentException("pencarian pengguna rusak");
+            }
+            return pelanggan;
+        }, Clock.systemDefaultZone());
+        MenuItem menu = new MenuItem("Kopi Uji", "Kopi", 50_000);
+
+        Order pertama = new Order("A1", pelanggan);
+        pertama.tambahItem(menu, 2);
+        buku.catat(pertama);
+        try {
+            buku.tunggu();
+            gagal("tunggu() tidak melaporkan entri yang gagal");
+        } catch (IllegalStateException e) {
+            if (!(e.getCause() instanceof IllegalArgumentException)) {
+                gagal("Penyebab galat tidak ikut dilaporkan: " + e.getCause());
+            }
+        }
+
+        // Entri berikutnya membangunkan pekerja, yang juga mencoba ulang entri yang gagal.
+        rusak = false;
+        Order kedua = new Order("A2", pelanggan);
+        kedua.tambahItem(menu, 1);
+        buku.catat(kedua);
+        buku.tunggu();
+        int harapan = BukuPoin.poinUntuk(pertama) + BukuPoin.poinUntuk(kedua);
+        if (pelanggan.getPoin() != harapan) {
+            gagal("Poin " + pelanggan.getPoin() + " != " + harapan + " setelah entri dicoba ulang");
+        }
+        System.out.println("Entri yang gagal dilaporkan lalu dibukukan ulang.");
+    }
+
+    private static void gagal(String pesan) {
+        System.out.println("GAGAL: " + pesan);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,220 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Uji beban konkurensi tanpa framework; dijalankan lewat jalankan-uji.sh.
+// Banyak thread menambah dan menghapus item pada draf pesanan yang sama dan mengubah status
+// pesanan tersimpan yang sama, sambil menyimpan pesanan baru ke OrderStore dan
+// membatalkan/memulihkannya. Invarian diperiksa selama dan sesudah beban; keluar dengan kode 1
+// jika ada pelanggaran.
+public class UjiKonkurensi {
+    private static final int JUMLAH_MENU = 16;
+    private static final int JUMLAH_PESANAN_BERSAMA = 8;
+    private static final int JUMLAH_PELANGGAN = 4;
+
+    private static final Queue<String> pelanggaran = new ConcurrentLinkedQueue<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        int jumlahThread = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int putaran = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        DomainStore store = new DomainStore();
+        MenuItem[] menu = new MenuItem[JUMLAH_MENU];
+        for (int i = 0; i < menu.length; i++) {
+            menu[i] = new MenuItem("Menu " + i, "Makanan", 5_000 + 1_000 * i);
+            store.tambahMenu(menu[i]);
+        }
+        Pelanggan[] pelanggan = new Pelanggan[JUMLAH_PELANGGAN + 1];
+        for (int i = 0; i < JUMLAH_PELANGGAN; i++) {
+            pelanggan[i] = new Pelanggan("uji" + i, "rahasia" + i, "Pelanggan " + i, "0812" + i);
+            store.daftarkanPengguna(pelanggan[i]);
+        }
+        Pelanggan pemilikBersama = new Pelanggan("uji-bersama", "rahasia", "Pesanan Bersama", "0812");
+        store.daftarkanPengguna(pemilikBersama);
+        pelanggan[JUMLAH_PELANGGAN] = pemilikBersama;
+        // Draf belum disimpan, jadi barisnya boleh diubah banyak kasir sekaligus. Pesanan tersimpan
+        // hanya berubah status, yang ikut memindahkan indeks OrderStore dan entri buku poin.
+        Order[] draf = new Order[JUMLAH_PESANAN_BERSAMA];
+        Order[] tersimpan = new Order[JUMLAH_PESANAN_BERSAMA];
+        for (int i = 0; i < draf.length; i++) {
+            draf[i] = new Order("D" + i, pemilikBersama);
+            tersimpan[i] = new Order("B" + i, pemilikBersama);
+            tersimpan[i].tambahItem(menu[i % menu.length]);
+            store.simpanPesanan(tersimpan[i], pemilikBersama);
+        }
+        try {
+            tersimpan[0].tambahItem(menu[0]);
+            catat("Pesanan tersimpan " + tersimpan[0].getId() + " masih bisa ditambah item");
+        } catch (IllegalStateException e) {
+            // diharapkan
+        }
+
+        AtomicInteger disimpan = new AtomicInteger(tersimpan.length);
+        CountDownLatch mulai = new CountDownLatch(1);
+        List<Thread> pekerja = new ArrayList<>();
+        for (int t = 0; t < jumlahThread; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    mulai.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom acak = ThreadLocalRandom.current();
+                StatusPesanan[] semuaStatus = StatusPesanan.values();
+                List<Order> milikSendiri = new ArrayList<>();
+                for (int n = 0; n < putaran; n++) {
+                    Order order = draf[acak.nextInt(draf.length)];
+                    int pilihan = acak.nextInt(100);
+                    if (pilihan < 35) {
+                        order.tambahItem(menu[acak.nextInt(menu.length)], 1 + acak.nextInt(3));
+                    } else if (pilihan < 60) {
+                        order.hapusItem(menu[acak.nextInt(menu.length)].getNomorId());
+                    } else if (pilihan < 75) {
+                        tersimpan[acak.nextInt(tersimpan.length)]
+                                .setStatus(semuaStatus[acak.nextInt(semuaStatus.length)]);
+                    } else if (pilihan < 85) {
+                        Pelanggan pemesan = pelanggan[acak.nextInt(JUMLAH_PELANGGAN)];
+                        Order baru = new Order("T" + n, pemesan);
+                        baru.tambahItem(menu[acak.nextInt(menu.length)], 1 + acak.nextInt(5));
+                        store.simpanPesanan(baru, pemesan);
+                        milikSendiri.add(baru);
+                        disimpan.incrementAndGet();
+                    } else if (pilihan < 95 && !milikSendiri.isEmpty()) {
+                        // Membatalkan dan memulihkan pesanan tersimpan membalik entri buku poin.
+                        milikSendiri.get(acak.nextInt(milikSendiri.size()))
+                                .setStatus(semuaStatus[acak.nextInt(semuaStatus.length)]);
+                    } else {
+                        periksaPesanan(order);
+                    }
+                }
+            }, "uji-" + t);
+            pekerja.add(thread);
+            thread.start();
+        }
+
+        long awal = System.nanoTime();
+        mulai.countDown();
+        for (Thread thread : pekerja) {
+            thread.join();
+        }
+        long durasiMs = (System.nanoTime() - awal) / 1_000_000;
+
+        for (Order order : draf) {
+            periksaPesanan(order);
+        }
+        for (Order order : tersimpan) {
+            periksaPesanan(order);
+        }
+        periksaStore(store, disimpan.get());
+        periksaPoin(store, pelanggan);
+
+        System.out.printf("%d thread x %d putaran selesai dalam %d ms, %d pesanan tersimpan%n",
+                jumlahThread, putaran, durasiMs, store.getPesanan().ukuran());
+        if (pelanggaran.isEmpty()) {
+            System.out.println("Semua invarian terpenuhi.");
+            return;
+        }
+        System.out.println(pelanggaran.size() + " pelanggaran invarian:");
+        int ditampilkan = 0;
+        for (String pesan : pelanggaran) {
+            if (ditampilkan++ == 20) {
+                System.out.println("  ...");
+                break;
+            }
+            System.out.println("  " + pesan);
+        }
+        System.exit(1);
+    }
+
+    // Total dan jumlah unit harus sama dengan jumlah baris-barisnya. Dibaca sambil memegang kunci
+    // pesanan supaya tidak ada perubahan di tengah pemeriksaan.
+    private static void periksaPesanan(Order order) {
+        synchronized (order) {
+            long subtotal = 0;
+            int unit = 0;
+            Set<Long> idMenu = new HashSet<>();
+            List<OrderItem> items = order.getItems();
+            for (OrderItem item : items) {
+                subtotal += item.getSubtotal();
+                unit += item.getJumlah();
+                if (item.getJumlah() <= 0) {
+                    catat("Pesanan " + order.getId() + " punya baris dengan jumlah " + item.getJumlah());
+                }
+                if (!idMenu.add(item.getMenuItem().getNomorId())) {
+                    catat("Pesanan " + order.getId() + " punya baris ganda untuk menu " + item.getMenuItem().getId());
+                }
+            }
+            if (subtotal != order.hitungTotal()) {
+                catat("Pesanan " + order.getId() + ": total " + order.hitungTotal() + " != jumlah baris " + subtotal);
+            }
+            if (unit != order.getJumlahUnit()) {
+                catat("Pesanan " + order.getId() + ": unit " + order.getJumlahUnit() + " != jumlah baris " + unit);
+            }
+            if (items.size() != order.getJumlahBaris()) {
+                catat("Pesanan " + order.getId() + ": jumlah baris " + order.getJumlahBaris() + " != " + items.size());
+            }
+        }
+    }
+
+    // Setiap pesanan tercatat tepat sekali, bisa dicari lewat ID, dan berada di satu-satunya
+    // antrean status yang sesuai dengan statusnya.
+    private static void periksaStore(DomainStore store, int disimpan) {
+        OrderStore orders = store.getPesanan();
+        if (orders.ukuran() != disimpan) {
+            catat("OrderStore berisi " + orders.ukuran() + " pesanan, seharusnya " + disimpan);
+        }
+        Set<Long> id = new HashSet<>();
+        for (Order order : orders) {
+            if (!id.add(order.getNomorId())) {
+                catat("ID pesanan ganda: " + order.getId());
+            }
+            if (orders.cari(order.getNomorId()) != order) {
+                catat("Pesanan " + order.getId() + " tidak ditemukan lewat cari()");
+            }
+        }
+        int totalPerStatus = 0;
+        for (StatusPesanan status : StatusPesanan.values()) {
+            List<Order> antrean = orders.pesananDenganStatus(status);
+            totalPerStatus += antrean.size();
+            for (Order order : antrean) {
+                if (order.getStatusPesanan() != status) {
+                    catat("Pesanan " + order.getId() + " berstatus " + order.getStatus()
+                            + " tetapi ada di antrean " + status.getLabel());
+                }
+            }
+            if (antrean.size() != orders.jumlahDenganStatus(status)) {
+                catat("Antrean " + status.getLabel() + " berukuran tidak konsisten");
+            }
+        }
+        if (totalPerStatus != orders.ukuran()) {
+            catat("Jumlah semua antrean status " + totalPerStatus + " != " + orders.ukuran() + " pesanan");
+        }
+    }
+
+    // Baris pesanan tersimpan tidak bisa berubah dan semuanya dibuat bulan ini, jadi saldo setiap
+    // pelanggan harus sama dengan poin semua pesanannya yang tidak dibatalkan.
+    private static void periksaPoin(DomainStore store, Pelanggan[] pelanggan) {
+        store.getBukuPoin().tunggu();
+        for (Pelanggan p : pelanggan) {
+            int harapan = 0;
+            for (Order order : store.getPesanan().pesananPelanggan(p.getUsername())) {
+                if (order.getStatusPesanan() != StatusPesanan.DIBATALKAN) {
+                    harapan += BukuPoin.poinUntuk(order);
+                }
+            }
+            if (p.getPoin() != harapan) {
+                catat("Poin " + p.getUsername() + " " + p.getPoin() + " != " + harapan);
+            }
+        }
+    }
+
+    private static void catat(String pesan) {
+        pelanggaran.add(pesan);
+    }
+}
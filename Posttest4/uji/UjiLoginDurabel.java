@@ -0,0 +1,75 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Uji login dengan password teks biasa dari versi lama: hash barunya dicatat ke log, dan login
+// baru boleh selesai setelah rekaman itu durabel.
+public class UjiLoginDurabel {
+    public static void main(String[] args) throws Exception {
+        PendengarTertunda pendengar = new PendengarTertunda();
+        DomainStore store = new DomainStore();
+        store.setPendengar(pendengar);
+        Pelanggan lama = new Pelanggan("lama", Kredensial.dariTersimpan("rahasia"), "Pelanggan Lama", "0812");
+        store.daftarkanPengguna(lama);
+
+        CompletableFuture<User> login = store.loginAsync("lama", "rahasia");
+        if (!pendengar.dicatat.get(10, TimeUnit.SECONDS)) {
+            gagal("Hash baru tidak dicatat");
+        }
+        Thread.sleep(100);
+        if (login.isDone()) {
+            gagal("Login selesai sebelum hash barunya durabel");
+        }
+        pendengar.durabel.complete(null);
+        if (login.get(5, TimeUnit.SECONDS) != lama) {
+            gagal("Login tidak mengembalikan pengguna setelah hash durabel");
+        }
+        if (lama.getKredensial().isTeksBiasa()) {
+            gagal("Kredensial masih teks biasa setelah login");
+        }
+        System.out.println("Login menunggu hash barunya durabel.");
+    }
+
+    private static void gagal(String pesan) {
+        System.out.println("GAGAL: " + pesan);
+        System.exit(1);
+    }
+
+    // Log palsu yang baru menyatakan durabel saat diminta uji.
+    private static final class PendengarTertunda implements PendengarDomain {
+        final CompletableFuture<Boolean> dicatat = new CompletableFuture<>();
+        final CompletableFuture<Void> durabel = new CompletableFuture<>();
+
+        @Override
+        public void kredensialDiubah(User user) { dicatat.complete(true); }
+
+        @Override
+        public CompletableFuture<Void> sinkronAsync() { return durabel; }
+
+        @Override
+        public void sinkron() { durabel.join(); }
+
+        @Override
+        public void menuDisimpan(MenuItem item) { }
+
+        @Override
+        public void menuDihapus(MenuItem item) { }
+
+        @Override
+        public void penggunaDisimpan(User user) { }
+
+        @Override
+        public void penggunaDihapus(User user) { }
+
+        @Override
+        public void pesananDisimpan(Order order) { }
+
+        @Override
+        public void statusDiubah(Order order) { }
+
+        @Override
+        public void blokMenuDicadangkan(long batas) { }
+
+        @Override
+        public void blokPesananDicadangkan(long batas) { }
+    }
+}
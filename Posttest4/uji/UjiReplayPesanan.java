@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Uji urutan rekaman WAL saat pesanan baru langsung diubah statusnya oleh kasir lain.
+// Begitu pesanan masuk OrderStore, thread lain bisa menemukannya dan mengubah statusnya sebelum
+// rekaman pesanannya tertulis. Uji ini menahan rekaman pesanan, membiarkan thread lain mengubah
+// status dan menunggu sampai durabel, lalu menyalin berkas log seolah proses mati saat itu.
+// Perubahan yang sudah dikonfirmasi harus ada di salinan itu setelah replay.
+public class UjiReplayPesanan {
+    private static final long TAHAN_MS = 200;
+
+    public static void main(String[] args) throws Exception {
+        Path folder = Files.createTempDirectory("uji-replay");
+        Path berkasLog = folder.resolve("uji.wal");
+        Path salinanCrash = folder.resolve("crash.wal");
+        try {
+            DomainStore store = new DomainStore();
+            WriteAheadLog wal = WriteAheadLog.buka(berkasLog, store);
+            PendengarTertahan pendengar = new PendengarTertahan(wal, store, berkasLog, salinanCrash);
+            store.setPendengar(pendengar);
+
+            MenuItem menu = new MenuItem("Kopi Uji", "Kopi", 20_000);
+            store.tambahMenu(menu);
+            Pelanggan pelanggan = new Pelanggan("uji", "rahasia", "Pelanggan Uji", "0812");
+            store.daftarkanPengguna(pelanggan);
+            Order order = new Order("A1", pelanggan);
+            order.tambahItem(menu, 2);
+            store.simpanPesanan(order, pelanggan);
+            store.sinkron();
+            pendengar.kasirLain.get(5, TimeUnit.SECONDS);
+            wal.close();
+
+            if (!Files.exists(salinanCrash)) {
+                gagal("Kasir lain tidak pernah menyelesaikan perubahan status");
+            }
+            DomainStore pulih = new DomainStore();
+            WriteAheadLog.buka(salinanCrash, pulih).close();
+            Order hasil = pulih.getPesanan().cari(order.getNomorId());
+            if (hasil == null) {
+                gagal("Status pesanan " + order.getId() + " sudah durabel, tetapi pesanannya hilang setelah replay");
+            }
+            if (hasil.getStatusPesanan() != StatusPesanan.SELESAI) {
+                gagal("Pesanan " + order.getId() + " berstatus " + hasil.getStatus() + " setelah replay, seharusnya Selesai");
+            }
+            System.out.println("Rekaman status tidak mendahului rekaman pesanannya.");
+        } finally {
+            Files.deleteIfExists(salinanCrash);
+            Files.deleteIfExists(berkasLog);
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    private static void gagal(String pesan) {
+        System.out.println("GAGAL: " + pesan);
+        System.exit(1);
+    }
+
+    // Meneruskan semua peristiwa ke WAL. Sebelum rekaman pesanan ditulis, kasir lain mengubah
+    // statusnya dan menyalin log setelah perubahan itu durabel; rekaman pesanan ditahan sampai
+    // kasir lain selesai atau TAHAN_MS lewat.
+    private static final class PendengarTertahan implements PendengarDomain {
+        private final WriteAheadLog wal;
+        private final DomainStore store;
+        private final Path berkasLog;
+        private final Path salinanCrash;
+        final CompletableFuture<Void> kasirLain = new CompletableFuture<>();
+
+        PendengarTertahan(WriteAheadLog wal, DomainStore store, Path berkasLog, Path salinanCrash) {
+            this.wal = wal;
+            this.store = store;
+            this.berkasLog = berkasLog;
+            this.salinanCrash = salinanCrash;
+        }
+
+        @Override
+        public void pesananDisimpan(Order order) {
+            Thread kasir = new Thread(() -> {
+                try {
+                    store.getPesanan().cari(order.getNomorId()).setStatus(StatusPesanan.SELESAI);
+                    store.sinkron();
+                    Files.copy(berkasLog, salinanCrash, StandardCopyOption.REPLACE_EXISTING);
+                    kasirLain.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    kasirLain.completeExceptionally(e);
+                }
+            }, "kasir-lain");
+            kasir.start();
+            try {
+                kasirLain.get(TAHAN_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                // kasir lain masih menunggu; rekaman pesanan ditulis sekarang
+            }
+            wal.pesananDisimpan(order);
+        }
+
+        @Override
+        public void menuDisimpan(MenuItem item) { wal.menuDisimpan(item); }
+
+        @Override
+        public void menuDihapus(MenuItem item) { wal.menuDihapus(item); }
+
+        @Override
+        public void penggunaDisimpan(User user) { wal.penggunaDisimpan(user); }
+
+        @Override
+        public void penggunaDihapus(User user) { wal.penggunaDihapus(user); }
+
+        @Override
+        public void statusDiubah(Order order) { wal.statusDiubah(order); }
+
+        @Override
+        public void kredensialDiubah(User user) { wal.kredensialDiubah(user); }
+
+        @Override
+        public void blokMenuDicadangkan(long batas) { wal.blokMenuDicadangkan(batas); }
+
+        @Override
+        public void blokPesananDicadangkan(long batas) { wal.blokPesananDicadangkan(batas); }
+
+        @Override
+        public void sinkron() { wal.sinkron(); }
+
+        @Override
+        public CompletableFuture<Void> sinkronAsync() { return wal.sinkronAsync(); }
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Pengukuran biaya PBKDF2: login lewat pool verifikator, burst yang melebihi antrean, dan hashing
+// password baru di thread pemanggil dibanding lewat pool. Hasilnya bergantung pada mesin, jadi
+// hanya dicetak dan tidak diperiksa.
+public class UkurLogin {
+    public static void main(String[] args) {
+        int jumlahLogin = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int inti = Runtime.getRuntime().availableProcessors();
+        DomainStore store = new DomainStore();
+        store.daftarkanPengguna(new Pelanggan("budi", store.buatKredensial("rahasia1"), "Budi", "0812"));
+        for (int i = 0; i < 3; i++) {
+            store.login("budi", "rahasia1");
+        }
+
+        long awal = System.nanoTime();
+        List<CompletableFuture<User>> hasil = new ArrayList<>();
+        for (int i = 0; i < jumlahLogin; i++) {
+            hasil.add(store.loginAsync("budi", "rahasia1"));
+        }
+        for (CompletableFuture<User> login : hasil) {
+            if (login.join() == null) {
+                throw new IllegalStateException("Login gagal saat pengukuran");
+            }
+        }
+        double detik = (System.nanoTime() - awal) / 1e9;
+        System.out.printf("%d core, pool %d: %d login dalam %.2f dtk = %.1f login/dtk (%.1f per core)%n",
+                inti, Math.max(1, inti / 2), jumlahLogin, detik, jumlahLogin / detik, jumlahLogin / detik / inti);
+
+        int jumlahPengguna = Math.max(2, inti);
+        awal = System.nanoTime();
+        for (int i = 0; i < jumlahPengguna; i++) {
+            Kredensial.buat("rahasia" + i);
+        }
+        double msPemanggil = (System.nanoTime() - awal) / 1e6;
+        awal = System.nanoTime();
+        List<CompletableFuture<Kredensial>> kredensial = new ArrayList<>();
+        for (int i = 0; i < jumlahPengguna; i++) {
+            kredensial.add(store.buatKredensialAsync("rahasia" + i));
+        }
+        for (CompletableFuture<Kredensial> k : kredensial) {
+            k.join();
+        }
+        double msPool = (System.nanoTime() - awal) / 1e6;
+        System.out.printf("Hash %d password baru: %.0f ms di thread pemanggil, %.0f ms lewat pool (%.0f ms per password)%n",
+                jumlahPengguna, msPemanggil, msPool, msPemanggil / jumlahPengguna);
+
+        // Terakhir, karena login yang diterima tidak ditunggu; thread pool daemon ikut berhenti.
+        hasil.clear();
+        awal = System.nanoTime();
+        for (int i = 0; i < 400; i++) {
+            hasil.add(store.loginAsync("budi", "rahasia1"));
+        }
+        double msKirim = (System.nanoTime() - awal) / 1e6;
+        int ditolak = 0;
+        for (CompletableFuture<User> login : hasil) {
+            if (login.isCompletedExceptionally()) {
+                ditolak++;
+            }
+        }
+        System.out.printf("Burst 400 login: %d ditolak seketika, dikirim dalam %.1f ms%n", ditolak, msKirim);
+    }
+}
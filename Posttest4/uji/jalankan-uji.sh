@@ -0,0 +1,30 @@
+#!/bin/sh
+# Menjalankan uji di folder ini terhadap kelas produksi RestaurantEase.
+#
+#   sh Posttest4/uji/jalankan-uji.sh                 semua uji dengan argumen bawaan
+#   sh Posttest4/uji/jalankan-uji.sh UjiKonkurensi 16 50000
+#   sh Posttest4/uji/jalankan-uji.sh UkurLogin       pengukuran (Ukur*) hanya jalan jika disebut
+#
+# Kode produksi dikompilasi lebih dulu lalu uji dikompilasi terhadap folder kelasnya. Kelas domain
+# tinggal di RestaurantEase.java, jadi peringatan auxiliaryclass dimatikan hanya untuk uji.
+# Setiap uji adalah kelas main biasa yang keluar dengan kode bukan 0 jika gagal.
+set -e
+dir=$(cd "$(dirname "$0")" && pwd)
+keluaran=${KELUARAN:-"${TMPDIR:-/tmp}/restaurantease-uji"}
+
+rm -rf "$keluaran"
+mkdir -p "$keluaran"
+javac -Xlint:all -d "$keluaran" "$dir/../RestaurantEase.java"
+javac -Xlint:all,-auxiliaryclass -cp "$keluaran" -d "$keluaran" "$dir"/*.java
+
+if [ $# -gt 0 ]; then
+    kelas=$1
+    shift
+    java -cp "$keluaran" "$kelas" "$@"
+    exit
+fi
+for berkas in "$dir"/Uji*.java; do
+    kelas=$(basename "$berkas" .java)
+    echo "== $kelas"
+    java -cp "$keluaran" "$kelas"
+done